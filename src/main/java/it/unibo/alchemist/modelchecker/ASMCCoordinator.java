@@ -0,0 +1,609 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+import it.unibo.alchemist.utils.L;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Coordinator side of the distributed execution of an experiment. Workers
+ * ({@link ASMCWorker}) connect to the coordinator, possibly from other JVMs
+ * or machines, and receive the serialized environment, the property and the
+ * parameters of the experiment. The coordinator then hands ranges of run
+ * indices out to them, and they stream back the encoded result of every run.
+ * Since the seed of every run only depends on the master seed and the run
+ * index, the results are the same that a local execution would produce.
+ * 
+ * Runs handed to a worker which disconnects are handed to the others. Workers
+ * can connect at any time: those connecting while no experiment is running
+ * wait for the next one.
+ * 
+ * Both sides deserialize what the other sends, so the coordinator and its
+ * workers share a secret, and every connection starts with a mutual
+ * challenge-response (HMAC-SHA256 over fresh nonces of both sides): nothing
+ * is read from a peer which does not prove it knows the secret. The
+ * coordinator only listens on the loopback interface unless told otherwise.
+ * The handshake does not encrypt nor sign the traffic which follows: across
+ * untrusted networks, tunnel the connections (e.g. over SSH or TLS).
+ * 
+ * To distribute an experiment, pass the coordinator to
+ * {@link AlchemistASMC#setCoordinator(ASMCCoordinator)}.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public final class ASMCCoordinator implements Closeable {
+
+	/**
+	 * Receives the results of the runs.
+	 * 
+	 * @param <D>
+	 *            Property result type
+	 */
+	public interface ResultHandler<D> {
+		/**
+		 * Called by the thread reading from a worker once a run is over.
+		 * 
+		 * @param run
+		 *            the index of the run
+		 * @param result
+		 *            the result of the run
+		 */
+		void handle(int run, D result);
+	}
+
+	/**
+	 * Default time an experiment waits for a worker to connect when none is
+	 * connected, in milliseconds.
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+	static final int VERSION = 2;
+	static final byte RANGE = 0;
+	static final byte CANCEL = 1;
+	static final byte END = 2;
+	static final byte RESULT = 3;
+	static final byte COORDINATOR_PROOF = 'C';
+	static final byte WORKER_PROOF = 'W';
+	static final int NONCE_LENGTH = 32;
+	static final int PROOF_LENGTH = 32;
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+	private static final String MAC = "HmacSHA256";
+	private static final SecureRandom NONCES = new SecureRandom();
+	private static final byte[] CLOSE = new byte[0];
+	private final ServerSocket server;
+	private final byte[] secret;
+	private final List<Connection> idle = new ArrayList<>();
+	private final List<Connection> workers = new ArrayList<>();
+	private final SortedSet<Integer> backlog = new TreeSet<>();
+	private byte[] description;
+	private ResultCodec<Object> codec;
+	private ResultHandler<Object> handler;
+	private boolean running;
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private long idleSince;
+
+	/**
+	 * Builds a coordinator listening on the loopback interface only.
+	 * 
+	 * @param port
+	 *            the port to listen for workers on. Use 0 for any free port.
+	 * @param sharedSecret
+	 *            the secret workers must prove to know
+	 * @throws IOException
+	 *             if the port can not be opened
+	 */
+	public ASMCCoordinator(final int port, final byte[] sharedSecret) throws IOException {
+		this(InetAddress.getLoopbackAddress(), port, sharedSecret);
+	}
+
+	/**
+	 * @param bindAddress
+	 *            the local address to listen on, null for all the interfaces
+	 * @param port
+	 *            the port to listen for workers on. Use 0 for any free port.
+	 * @param sharedSecret
+	 *            the secret workers must prove to know
+	 * @throws IOException
+	 *             if the port can not be opened
+	 */
+	public ASMCCoordinator(final InetAddress bindAddress, final int port, final byte[] sharedSecret) throws IOException {
+		if (sharedSecret == null || sharedSecret.length == 0) {
+			throw new IllegalArgumentException("A non empty shared secret is required.");
+		}
+		secret = sharedSecret.clone();
+		server = new ServerSocket(port, 0, bindAddress);
+		final Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				acceptWorkers();
+			}
+		}, "ASMC coordinator on port " + server.getLocalPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	private void acceptWorkers() {
+		while (!server.isClosed()) {
+			final Socket s;
+			try {
+				s = server.accept();
+			} catch (SocketException e) {
+				return;
+			} catch (IOException e) {
+				L.error(e);
+				continue;
+			}
+			final Thread handshake = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					admit(s);
+				}
+			}, "ASMC handshake with " + s.getRemoteSocketAddress());
+			handshake.setDaemon(true);
+			handshake.start();
+		}
+	}
+
+	private void admit(final Socket s) {
+		try {
+			s.setSoTimeout(HANDSHAKE_TIMEOUT);
+			final Connection c = new Connection(s);
+			if (!authenticate(c)) {
+				L.warn("Rejected worker " + s.getRemoteSocketAddress() + ": authentication failed.");
+				c.close();
+				return;
+			}
+			s.setSoTimeout(0);
+			synchronized (this) {
+				if (server.isClosed()) {
+					c.close();
+				} else if (running) {
+					join(c);
+					dispatch();
+				} else {
+					idle.add(c);
+				}
+			}
+		} catch (IOException e) {
+			L.warn("Rejected worker " + s.getRemoteSocketAddress() + ": " + e.getMessage());
+			try {
+				s.close();
+			} catch (IOException e1) {
+				L.warn(e1);
+			}
+		}
+	}
+
+	private boolean authenticate(final Connection c) throws IOException {
+		final byte[] nonce = nonce();
+		c.out.writeInt(VERSION);
+		c.out.write(nonce);
+		c.out.flush();
+		final byte[] workerNonce = new byte[NONCE_LENGTH];
+		c.in.readFully(workerNonce);
+		final byte[] workerProof = new byte[PROOF_LENGTH];
+		c.in.readFully(workerProof);
+		if (!MessageDigest.isEqual(workerProof, proof(secret, WORKER_PROOF, nonce, workerNonce))) {
+			return false;
+		}
+		c.out.write(proof(secret, COORDINATOR_PROOF, nonce, workerNonce));
+		c.out.flush();
+		return true;
+	}
+
+	/**
+	 * @return a fresh random nonce for the handshake
+	 */
+	static byte[] nonce() {
+		final byte[] nonce = new byte[NONCE_LENGTH];
+		NONCES.nextBytes(nonce);
+		return nonce;
+	}
+
+	/**
+	 * Computes the proof a side of the handshake sends to show it knows the
+	 * secret.
+	 * 
+	 * @param key
+	 *            the shared secret
+	 * @param role
+	 *            {@link #COORDINATOR_PROOF} or {@link #WORKER_PROOF}, so that
+	 *            a side can not reflect the proof of the other
+	 * @param coordinatorNonce
+	 *            the nonce of the coordinator
+	 * @param workerNonce
+	 *            the nonce of the worker
+	 * @return the HMAC-SHA256 of the role and of the nonces
+	 */
+	static byte[] proof(final byte[] key, final byte role, final byte[] coordinatorNonce, final byte[] workerNonce) {
+		try {
+			final Mac mac = Mac.getInstance(MAC);
+			mac.init(new SecretKeySpec(key, MAC));
+			mac.update(role);
+			mac.update(coordinatorNonce);
+			mac.update(workerNonce);
+			return mac.doFinal();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the port workers should connect to
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * @return the number of workers taking part in the current experiment
+	 */
+	public synchronized int getWorkerCount() {
+		return workers.size();
+	}
+
+	/**
+	 * @return how long an experiment waits for a worker to connect when none
+	 *         is connected, in milliseconds
+	 */
+	public synchronized long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * @param millis
+	 *            how long an experiment waits for a worker to connect when
+	 *            none is connected, in milliseconds
+	 */
+	public synchronized void setIdleTimeout(final long millis) {
+		if (millis <= 0) {
+			throw new IllegalArgumentException("The idle timeout must be positive.");
+		}
+		idleTimeout = millis;
+	}
+
+	/**
+	 * Starts a new experiment, sending its description to all the connected
+	 * workers.
+	 * 
+	 * @param environment
+	 *            the serialized environment
+	 * @param prototype
+	 *            the property to verify, which is cloned for every run
+	 * @param rc
+	 *            the codec for the results
+	 * @param masterSeed
+	 *            the master seed of the experiment
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 * @param h
+	 *            the handler for the results
+	 * @param <D>
+	 *            Property result type
+	 * @throws IOException
+	 *             if the property or the codec can not be serialized
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <D> void start(final byte[] environment, final Property<?, ?, D> prototype, final ResultCodec<D> rc, final long masterSeed, final long steps, final double finalTime, final ResultHandler<D> h) throws IOException {
+		if (running) {
+			throw new IllegalStateException("An experiment is already running.");
+		}
+		final ByteArrayOutputStream job = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(job)) {
+			out.writeObject(prototype);
+			out.writeObject(rc);
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(environment.length);
+			out.write(environment);
+			out.writeInt(job.size());
+			job.writeTo(out);
+			out.writeLong(masterSeed);
+			out.writeLong(steps);
+			out.writeDouble(finalTime);
+		}
+		description = bytes.toByteArray();
+		codec = (ResultCodec<Object>) rc;
+		handler = (ResultHandler<Object>) h;
+		running = true;
+		idleSince = System.nanoTime();
+		for (final Connection c : idle) {
+			join(c);
+		}
+		idle.clear();
+	}
+
+	/**
+	 * Queues a run. Queued runs are handed out to the workers by
+	 * {@link #flush()}.
+	 * 
+	 * @param run
+	 *            the index of the run
+	 */
+	public synchronized void submit(final int run) {
+		backlog.add(run);
+	}
+
+	/**
+	 * Hands the queued runs out to the workers, in ranges of contiguous
+	 * indices, balancing the number of runs each worker has to complete. If
+	 * no worker is connected, runs are handed out as soon as one connects.
+	 */
+	public synchronized void flush() {
+		dispatch();
+	}
+
+	/**
+	 * Tells all the workers to abandon the runs they have been handed, and
+	 * forgets about the queued runs. Results arriving afterwards are ignored.
+	 */
+	public synchronized void cancel() {
+		backlog.clear();
+		for (final Connection c : workers) {
+			c.outstanding.clear();
+			c.send(new byte[] { CANCEL });
+		}
+	}
+
+	/**
+	 * Waits until the result of every run handed out has been received. If
+	 * the experiment is {@link #isAbandoned() abandoned}, gives up: the runs
+	 * still queued or handed out are left as they are.
+	 * 
+	 * @return true if every result has been received, false if no worker was
+	 *         left to compute the missing ones
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public synchronized boolean awaitOutstanding() throws InterruptedException {
+		while (!backlog.isEmpty() || hasOutstanding()) {
+			if (workers.isEmpty()) {
+				final long left = idleLeft();
+				if (left <= 0) {
+					return false;
+				}
+				wait(left);
+			} else {
+				wait();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if an experiment is running and no worker has taken part
+	 *         in it for {@link #getIdleTimeout()} milliseconds, in which case
+	 *         no further result can be expected
+	 */
+	public synchronized boolean isAbandoned() {
+		return running && workers.isEmpty() && idleLeft() <= 0;
+	}
+
+	private long idleLeft() {
+		return idleTimeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - idleSince);
+	}
+
+	/**
+	 * Ends the current experiment and closes the connections to the workers,
+	 * which can then connect again for the next experiment.
+	 */
+	public synchronized void finish() {
+		for (final Connection c : workers) {
+			c.send(new byte[] { END });
+			c.send(CLOSE);
+		}
+		workers.clear();
+		backlog.clear();
+		running = false;
+		handler = null;
+		notifyAll();
+	}
+
+	@Override
+	public void close() throws IOException {
+		server.close();
+		synchronized (this) {
+			finish();
+			for (final Connection c : idle) {
+				c.close();
+			}
+			idle.clear();
+		}
+	}
+
+	private boolean hasOutstanding() {
+		for (final Connection c : workers) {
+			if (!c.outstanding.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void join(final Connection c) {
+		workers.add(c);
+		c.send(description);
+		c.start();
+		notifyAll();
+	}
+
+	private void dispatch() {
+		while (!backlog.isEmpty() && !workers.isEmpty()) {
+			Connection target = workers.get(0);
+			for (final Connection c : workers) {
+				if (c.outstanding.size() < target.outstanding.size()) {
+					target = c;
+				}
+			}
+			final int chunk = (backlog.size() + workers.size() - 1) / workers.size();
+			final int from = backlog.first();
+			int to = from;
+			while (to - from < chunk && backlog.remove(to)) {
+				to++;
+			}
+			for (int run = from; run < to; run++) {
+				target.outstanding.add(run);
+			}
+			target.send(ByteBuffer.allocate(1 + 2 * Integer.BYTES).put(RANGE).putInt(from).putInt(to).array());
+		}
+	}
+
+	private void drop(final Connection c) {
+		if (workers.remove(c)) {
+			L.warn("Lost worker " + c.socket.getRemoteSocketAddress() + ", " + c.outstanding.size() + " runs handed out again.");
+			backlog.addAll(c.outstanding);
+			c.outstanding.clear();
+			if (workers.isEmpty()) {
+				idleSince = System.nanoTime();
+			}
+			notifyAll();
+		}
+		c.close();
+	}
+
+	/*
+	 * The result is decoded before the run is taken off the outstanding ones,
+	 * so that a frame which can not be decoded leaves the run to be handed
+	 * out again when the connection is dropped.
+	 */
+	private synchronized void received(final Connection c, final int run, final byte[] data) {
+		if (handler != null && c.outstanding.contains(run)) {
+			final Object result = codec.decode(data);
+			c.outstanding.remove(run);
+			handler.handle(run, result);
+			notifyAll();
+		}
+	}
+
+	private synchronized void lost(final Connection c) {
+		drop(c);
+		dispatch();
+	}
+
+	/**
+	 * A worker. Frames are queued under the monitor of the coordinator and
+	 * written by a thread of the connection, so that a slow or stuck worker
+	 * never blocks the coordinator.
+	 */
+	private final class Connection {
+
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final SortedSet<Integer> outstanding = new TreeSet<>();
+		private final BlockingQueue<byte[]> outbox = new LinkedBlockingQueue<>();
+
+		private Connection(final Socket s) throws IOException {
+			socket = s;
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+		}
+
+		private void start() {
+			final String name = "ASMC worker " + socket.getRemoteSocketAddress();
+			final Thread reader = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					read();
+				}
+			}, name + " reader");
+			reader.setDaemon(true);
+			reader.start();
+			final Thread writer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					write();
+				}
+			}, name + " writer");
+			writer.setDaemon(true);
+			writer.start();
+		}
+
+		private void send(final byte[] frame) {
+			outbox.add(frame);
+		}
+
+		private void read() {
+			try {
+				while (true) {
+					if (in.readByte() != RESULT) {
+						throw new IOException("Protocol error.");
+					}
+					final int run = in.readInt();
+					final byte[] data = new byte[in.readInt()];
+					in.readFully(data);
+					received(this, run, data);
+				}
+			} catch (IOException e) {
+				lost(this);
+			} catch (RuntimeException e) {
+				L.warn("Invalid result from worker " + socket.getRemoteSocketAddress() + ": " + e);
+				lost(this);
+			}
+		}
+
+		private void write() {
+			try {
+				for (byte[] frame = outbox.take(); frame != CLOSE; frame = outbox.take()) {
+					out.write(frame);
+					if (outbox.isEmpty()) {
+						out.flush();
+					}
+				}
+				out.flush();
+				close();
+			} catch (IOException e) {
+				lost(this);
+			} catch (InterruptedException e) {
+				close();
+			}
+		}
+
+		private void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				L.warn(e);
+			}
+		}
+	}
+
+}
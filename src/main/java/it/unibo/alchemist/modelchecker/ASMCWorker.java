@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.executors.MultithreadedExecutor;
+import it.unibo.alchemist.core.implementations.Simulation;
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.implementations.JobHandoff;
+import it.unibo.alchemist.modelchecker.implementations.SeedSequence;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+import it.unibo.alchemist.utils.L;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Worker side of the distributed execution of an experiment. A worker
+ * connects to an {@link ASMCCoordinator}, receives the description of the
+ * experiment, runs the ranges of runs it is handed on a local
+ * {@link MultithreadedExecutor} and sends back the encoded result of each
+ * run as soon as it is available. Once the experiment is over, the worker
+ * connects again and waits for the next one, until the coordinator is no
+ * longer reachable.
+ * 
+ * The worker deserializes the property and the codec it receives, so it
+ * only talks to a coordinator which proves it knows the shared secret, and
+ * proves it knows the secret in turn.
+ * 
+ * Usage: <code>java it.unibo.alchemist.modelchecker.ASMCWorker host port</code>,
+ * with the shared secret in the {@value #SECRET_VARIABLE} environment
+ * variable.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ * @param <D>
+ *            Property result type
+ */
+public final class ASMCWorker<T, D> {
+
+	/**
+	 * Environment variable holding the shared secret when the worker is
+	 * started from the command line.
+	 */
+	public static final String SECRET_VARIABLE = "ASMC_SECRET";
+
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final BlockingQueue<Integer> queued = new LinkedBlockingQueue<>();
+	private final JobHandoff<Integer> pending = new JobHandoff<>();
+	private volatile boolean cancelled;
+	private Property<T, ?, D> property;
+	private ResultCodec<D> codec;
+
+	private ASMCWorker(final Socket s) throws IOException {
+		s.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+	}
+
+	/**
+	 * Serves experiments from a coordinator.
+	 * 
+	 * @param host
+	 *            the host the coordinator runs on
+	 * @param port
+	 *            the port the coordinator listens on
+	 * @param secret
+	 *            the secret shared with the coordinator
+	 * @throws IOException
+	 *             if the communication with the coordinator fails, or if the
+	 *             coordinator can not be authenticated
+	 * @throws ClassNotFoundException
+	 *             if the property or the codec of an experiment are not on the
+	 *             classpath
+	 */
+	public static void serve(final String host, final int port, final byte[] secret) throws IOException, ClassNotFoundException {
+		if (secret == null || secret.length == 0) {
+			throw new IllegalArgumentException("A non empty shared secret is required.");
+		}
+		while (true) {
+			try (Socket s = new Socket(host, port)) {
+				final ASMCWorker<?, ?> worker = new ASMCWorker<>(s);
+				authenticate(worker.in, worker.out, secret);
+				worker.runExperiment();
+			} catch (ConnectException | EOFException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Worker side of the handshake: checks the protocol version, proves the
+	 * knowledge of the secret and verifies the proof of the coordinator.
+	 * 
+	 * @param in
+	 *            the stream from the coordinator
+	 * @param out
+	 *            the stream to the coordinator
+	 * @param secret
+	 *            the shared secret
+	 * @throws IOException
+	 *             if the coordinator speaks another version of the protocol
+	 *             or can not be authenticated
+	 */
+	static void authenticate(final DataInputStream in, final DataOutputStream out, final byte[] secret) throws IOException {
+		if (in.readInt() != ASMCCoordinator.VERSION) {
+			throw new IOException("Unsupported coordinator version.");
+		}
+		final byte[] coordinatorNonce = new byte[ASMCCoordinator.NONCE_LENGTH];
+		in.readFully(coordinatorNonce);
+		final byte[] nonce = ASMCCoordinator.nonce();
+		out.write(nonce);
+		out.write(ASMCCoordinator.proof(secret, ASMCCoordinator.WORKER_PROOF, coordinatorNonce, nonce));
+		out.flush();
+		final byte[] proof = new byte[ASMCCoordinator.PROOF_LENGTH];
+		in.readFully(proof);
+		if (!MessageDigest.isEqual(proof, ASMCCoordinator.proof(secret, ASMCCoordinator.COORDINATOR_PROOF, coordinatorNonce, nonce))) {
+			throw new IOException("The coordinator could not be authenticated.");
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void runExperiment() throws IOException, ClassNotFoundException {
+		final byte[] env = new byte[in.readInt()];
+		in.readFully(env);
+		final byte[] job = new byte[in.readInt()];
+		in.readFully(job);
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(job))) {
+			property = (Property<T, ?, D>) ois.readObject();
+			codec = (ResultCodec<D>) ois.readObject();
+		}
+		final SeedSequence seeds = new SeedSequence(in.readLong());
+		final long steps = in.readLong();
+		final double finalTime = in.readDouble();
+		final MultithreadedExecutor<T> mx = new MultithreadedExecutor<T>() {
+			@Override
+			protected void configureSimulation(final ISimulation<T> s) {
+				final Property<T, ?, D> pclone = property.clone();
+				s.addOutputMonitor(pclone);
+				s.addOutputMonitor(new ResultSender(pending.claim(), pclone));
+			}
+		};
+		/*
+		 * Runs are submitted by a thread of their own, since every submission
+		 * waits for the executor to take the run: this thread keeps reading,
+		 * so that a cancellation is seen as soon as it is sent.
+		 */
+		final Thread submitter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						final int run = queued.take();
+						pending.offer(run);
+						mx.addJob(env, seeds.getEngine(run), 1, steps, finalTime);
+						pending.awaitClaim();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}, "ASMC worker submitter");
+		submitter.setDaemon(true);
+		submitter.start();
+		try {
+			for (byte msg = in.readByte(); msg != ASMCCoordinator.END; msg = in.readByte()) {
+				if (msg == ASMCCoordinator.RANGE) {
+					final int from = in.readInt();
+					final int to = in.readInt();
+					for (int run = from; run < to; run++) {
+						queued.add(run);
+					}
+				} else if (msg == ASMCCoordinator.CANCEL) {
+					cancelled = true;
+					queued.clear();
+				} else {
+					throw new IOException("Protocol error.");
+				}
+			}
+		} finally {
+			cancelled = true;
+			queued.clear();
+			submitter.interrupt();
+			mx.destroy();
+		}
+	}
+
+	private void send(final int run, final D result) {
+		final byte[] data = codec.encode(result);
+		synchronized (out) {
+			try {
+				out.writeByte(ASMCCoordinator.RESULT);
+				out.writeInt(run);
+				out.writeInt(data.length);
+				out.write(data);
+				out.flush();
+			} catch (IOException e) {
+				L.warn(e);
+				cancelled = true;
+			}
+		}
+	}
+
+	/**
+	 * Sends the result of a run to the coordinator, and stops the simulation
+	 * as soon as possible if the coordinator no longer needs it.
+	 */
+	private final class ResultSender implements OutputMonitor<T> {
+
+		private static final long serialVersionUID = 3301874127262474612L;
+		private final int run;
+		private final Property<T, ?, D> prop;
+
+		private ResultSender(final int index, final Property<T, ?, D> p) {
+			run = index;
+			prop = p;
+		}
+
+		@Override
+		public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+			stopIfCancelled(env);
+		}
+
+		@Override
+		public void initialized(final IEnvironment<T> env) {
+			stopIfCancelled(env);
+		}
+
+		@Override
+		public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+			if (!cancelled) {
+				send(run, prop.getResult());
+			}
+		}
+
+		private void stopIfCancelled(final IEnvironment<T> env) {
+			if (cancelled) {
+				Simulation.stop(env);
+			}
+		}
+	}
+
+	/**
+	 * @param args
+	 *            host and port of the coordinator. The shared secret is read
+	 *            from the {@value #SECRET_VARIABLE} environment variable.
+	 * @throws IOException
+	 *             if the communication with the coordinator fails
+	 * @throws ClassNotFoundException
+	 *             if the property or the codec of an experiment are not on the
+	 *             classpath
+	 */
+	public static void main(final String... args) throws IOException, ClassNotFoundException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: ASMCWorker host port");
+		}
+		final String secret = System.getenv(SECRET_VARIABLE);
+		if (secret == null || secret.isEmpty()) {
+			throw new IllegalArgumentException("The shared secret must be in the " + SECRET_VARIABLE + " environment variable.");
+		}
+		serve(args[0], Integer.parseInt(args[1]), secret.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.executors.MultithreadedExecutor;
+import it.unibo.alchemist.core.implementations.Simulation;
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.external.cern.jet.random.engine.RandomEngine;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.implementations.JobHandoff;
+import it.unibo.alchemist.modelchecker.implementations.ModelCache;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.utils.L;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+/**
+ * 
+ * Base class of the experiments scheduling their own runs on a single
+ * executor. It runs the experiment on a dedicated thread and records the
+ * exception ending it, if any, binds every simulation to the {@link Job} it
+ * was submitted for, and hands the results of the runs over to the thread
+ * running the experiment.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public abstract class AbstractASMCCampaign<T> {
+
+	/**
+	 * Default number of simulations kept queued or running at any time.
+	 */
+	public static final int DEFAULT_QUEUE_DEPTH = 2 * Runtime.getRuntime().availableProcessors();
+	private static final Submission BARRIER = new Submission(null, null, null, 0, 0);
+	private final Semaphore exec = new Semaphore(0);
+	private final Semaphore completed = new Semaphore(0);
+	private final Semaphore barrier = new Semaphore(0);
+	private final Queue<Job> arrivals = new ConcurrentLinkedQueue<>();
+	private final BlockingQueue<Submission> submissions = new LinkedBlockingQueue<>();
+	private final JobHandoff<Job> handoff = new JobHandoff<>();
+	private int queueDepth = DEFAULT_QUEUE_DEPTH;
+	private ModelCache models = ModelCache.getShared();
+	private volatile Throwable failure;
+	private final MultithreadedExecutor<T> mx = new MultithreadedExecutor<T>() {
+		@Override
+		protected void configureSimulation(final ISimulation<T> s) {
+			configure(s, handoff.claim());
+		}
+	};
+
+	/**
+	 * Attaches the monitors of a job to the simulation running it.
+	 * 
+	 * @param s
+	 *            the simulation
+	 * @param job
+	 *            the job the simulation was submitted for
+	 */
+	protected abstract void configure(ISimulation<T> s, Job job);
+
+	/**
+	 * Runs an experiment on a dedicated thread. Any exception ending the
+	 * experiment is logged and then reported by {@link #waitForCompletion()}.
+	 * 
+	 * @param experiment
+	 *            the experiment
+	 */
+	protected final void launch(final Experiment experiment) {
+		exec.drainPermits();
+		failure = null;
+		handoff.clear();
+		arrivals.clear();
+		submissions.clear();
+		completed.drainPermits();
+		barrier.drainPermits();
+		final Thread submitter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				handOver();
+			}
+		}, "ASMC submitter");
+		submitter.setDaemon(true);
+		submitter.start();
+		final ExecutorService ex = Executors.newSingleThreadExecutor();
+		ex.execute(new Runnable() {
+			public void run() {
+				try {
+					experiment.run();
+				} catch (InstantiationException | IllegalAccessException | InvocationTargetException | ClassNotFoundException | SAXException | IOException | ParserConfigurationException | InterruptedException | RuntimeException e) {
+					failure = e;
+					L.error(e);
+				} finally {
+					submitter.interrupt();
+					mx.destroy();
+					exec.release();
+				}
+			}
+		});
+		ex.shutdown();
+	}
+
+	/*
+	 * Hands the submitted runs over to the executor, one at a time, since the
+	 * job of a run can only be bound to its simulation once the previous one
+	 * has been claimed.
+	 */
+	private void handOver() {
+		try {
+			while (true) {
+				final Submission next = submissions.take();
+				if (next == BARRIER) {
+					barrier.release();
+				} else {
+					handoff.offer(next.job);
+					mx.addJob(next.env, next.engine, 1, next.steps, next.finalTime);
+					handoff.awaitClaim();
+				}
+			}
+		} catch (InterruptedException e) {
+			return;
+		}
+	}
+
+	/**
+	 * Queues a single run of a job. Runs are handed over to the executor in
+	 * submission order by a thread of their own, so the thread running the
+	 * experiment never waits for the executor: the number of runs queued or
+	 * running is only bounded by the experiment, usually to
+	 * {@link #getQueueDepth()}. Only called by the thread running the
+	 * experiment.
+	 * 
+	 * @param job
+	 *            the job, handed to {@link #configure(ISimulation, Job)}
+	 * @param env
+	 *            the serialized environment to start from
+	 * @param engine
+	 *            the random engine of the run
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 */
+	protected final void submit(final Job job, final byte[] env, final RandomEngine engine, final long steps, final double finalTime) {
+		submissions.add(new Submission(job, env, engine, steps, finalTime));
+	}
+
+	/**
+	 * Hands a job over to the thread running the experiment, along with the
+	 * result of its run. Safe to call from any thread.
+	 * 
+	 * @param job
+	 *            the job, once its run is over
+	 * @param result
+	 *            the result of the property, or null if the run was truncated
+	 */
+	protected final void deliver(final Job job, final Object result) {
+		job.result = result;
+		arrivals.add(job);
+		completed.release();
+	}
+
+	/**
+	 * @return the next job delivered, waiting for it if needed
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	protected final Job takeArrival() throws InterruptedException {
+		completed.acquire();
+		return arrivals.poll();
+	}
+
+	/**
+	 * @param timeout
+	 *            the maximum time to wait, not waiting at all if not positive
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return the next job delivered, or null if none was delivered in time
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	protected final Job pollArrival(final long timeout, final TimeUnit unit) throws InterruptedException {
+		return completed.tryAcquire(timeout, unit) ? arrivals.poll() : null;
+	}
+
+	/**
+	 * Waits for all the runs submitted to be over.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while the runs are handed over
+	 */
+	protected final void awaitRuns() throws InterruptedException {
+		submissions.add(BARRIER);
+		barrier.acquire();
+		mx.waitForCompletion();
+	}
+
+	/**
+	 * @param xmlFilePath
+	 *            Alchemist XML specification
+	 * @return the parsed model, through {@link #getModelCache()}
+	 * @throws InstantiationException
+	 *             if the model can not be built
+	 * @throws IllegalAccessException
+	 *             if the model can not be built
+	 * @throws InvocationTargetException
+	 *             if the model can not be built
+	 * @throws ClassNotFoundException
+	 *             if the model can not be built
+	 * @throws SAXException
+	 *             if the specification can not be parsed
+	 * @throws IOException
+	 *             if the specification can not be read
+	 * @throws ParserConfigurationException
+	 *             if the specification can not be parsed
+	 */
+	protected final ModelCache.Model parse(final String xmlFilePath)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException {
+		return models.get(xmlFilePath);
+	}
+
+	/**
+	 * Attaches a clone of a property to a simulation, and a
+	 * {@link ValueCollector} delivering its result.
+	 * 
+	 * @param s
+	 *            the simulation
+	 * @param job
+	 *            the job the simulation was submitted for
+	 * @param prototype
+	 *            the property
+	 */
+	protected final void collect(final ISimulation<T> s, final Job job, final Property<T, ?, ?> prototype) {
+		final Property<T, ?, ?> pclone = prototype.clone();
+		s.addOutputMonitor(pclone);
+		s.addOutputMonitor(new ValueCollector(job, pclone));
+	}
+
+	/**
+	 * Tells whether the result of a job is no longer needed, in which case its
+	 * run is stopped as soon as possible. This implementation always returns
+	 * false.
+	 * 
+	 * @param job
+	 *            the job
+	 * @return true if the run of the job can be stopped
+	 */
+	protected boolean isObsolete(final Job job) {
+		return false;
+	}
+
+	/**
+	 * @param result
+	 *            the result of a property, numeric or boolean
+	 * @return the result as a number, booleans being mapped to 1 and 0
+	 */
+	protected static double toDouble(final Object result) {
+		if (result instanceof Boolean) {
+			return ((Boolean) result) ? 1 : 0;
+		}
+		return ((Number) result).doubleValue();
+	}
+
+	/**
+	 * @return the maximum number of runs kept queued or running at any time
+	 */
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * @param depth
+	 *            the maximum number of runs kept queued or running at any
+	 *            time. Must be set before calling execute.
+	 */
+	public void setQueueDepth(final int depth) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Queue depth must be positive, " + depth + " given.");
+		}
+		queueDepth = depth;
+	}
+
+	/**
+	 * @return the cache the models are parsed through
+	 */
+	public ModelCache getModelCache() {
+		return models;
+	}
+
+	/**
+	 * Sets the cache the models are parsed through. By default, all the
+	 * experiments share {@link ModelCache#getShared()}, so that experiments on
+	 * the same model only parse it once.
+	 * 
+	 * @param cache
+	 *            the cache. Use a cache with no capacity to parse the models
+	 *            at every execution.
+	 */
+	public void setModelCache(final ModelCache cache) {
+		if (cache == null) {
+			throw new IllegalArgumentException("The model cache can not be null.");
+		}
+		models = cache;
+	}
+
+	/**
+	 * @return the exception which ended the last experiment, or null if it
+	 *         ended normally or is still running
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Waits for the experiment to finish.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the experiment was ended by an exception, which is the
+	 *             cause
+	 */
+	public void waitForCompletion() {
+		try {
+			exec.acquire();
+			exec.release();
+		} catch (InterruptedException e) {
+			L.error(e);
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Waits for the experiment to finish, for at most the given time.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return true if the experiment is over, false if the time elapsed first
+	 * @throws IllegalStateException
+	 *             if the experiment was ended by an exception, which is the
+	 *             cause
+	 */
+	protected final boolean awaitCompletion(final long timeout, final TimeUnit unit) {
+		try {
+			if (exec.tryAcquire(Math.max(0, timeout), unit)) {
+				exec.release();
+				checkFailure();
+				return true;
+			}
+		} catch (InterruptedException e) {
+			L.error(e);
+		}
+		return false;
+	}
+
+	private void checkFailure() {
+		final Throwable f = failure;
+		if (f != null) {
+			throw new IllegalStateException("The experiment failed: " + f.getMessage(), f);
+		}
+	}
+
+	/**
+	 * The body of an experiment, run by {@link AbstractASMCCampaign#launch}.
+	 */
+	protected interface Experiment {
+
+		/**
+		 * Runs the experiment.
+		 * 
+		 * @throws InstantiationException
+		 *             if a model can not be built
+		 * @throws IllegalAccessException
+		 *             if a model can not be built
+		 * @throws InvocationTargetException
+		 *             if a model can not be built
+		 * @throws ClassNotFoundException
+		 *             if a model can not be built
+		 * @throws SAXException
+		 *             if a specification can not be parsed
+		 * @throws IOException
+		 *             if a file can not be read or written
+		 * @throws ParserConfigurationException
+		 *             if a specification can not be parsed
+		 * @throws InterruptedException
+		 *             if interrupted while waiting for runs
+		 */
+		void run() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException;
+	}
+
+	/*
+	 * A run waiting to be handed over to the executor.
+	 */
+	private static final class Submission {
+
+		private final Job job;
+		private final byte[] env;
+		private final RandomEngine engine;
+		private final long steps;
+		private final double finalTime;
+
+		private Submission(final Job j, final byte[] e, final RandomEngine r, final long s, final double t) {
+			job = j;
+			env = e;
+			engine = r;
+			steps = s;
+			finalTime = t;
+		}
+	}
+
+	/**
+	 * Describes a run: the group it belongs to (a model, a point, a stage,
+	 * depending on the experiment), its index within the group and, once it
+	 * is over, its result.
+	 */
+	protected static final class Job {
+
+		private final int group;
+		private final int index;
+		private volatile Object result;
+		private volatile boolean truncated;
+
+		/**
+		 * @param g
+		 *            the group of the run
+		 * @param i
+		 *            the index of the run within the group
+		 */
+		public Job(final int g, final int i) {
+			group = g;
+			index = i;
+		}
+
+		/**
+		 * @return the group of the run
+		 */
+		public int getGroup() {
+			return group;
+		}
+
+		/**
+		 * @return the index of the run within the group
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the result of the property, null if the run is not over or
+		 *         it was truncated
+		 */
+		public Object getResult() {
+			return result;
+		}
+
+		/**
+		 * @return the result of a numeric or boolean property as a number,
+		 *         NaN if the run is not over or it was truncated
+		 */
+		public double getValue() {
+			final Object r = result;
+			return r == null ? Double.NaN : toDouble(r);
+		}
+
+		/**
+		 * @return true if the run was stopped because its result was no
+		 *         longer needed
+		 */
+		public boolean isTruncated() {
+			return truncated;
+		}
+	}
+
+	/**
+	 * Hands the result of a property over to the thread running the
+	 * experiment once the run is over. The run is stopped as soon as its job
+	 * becomes {@link AbstractASMCCampaign#isObsolete(Job) obsolete}, and the
+	 * job is then delivered as truncated. Handing over is lock free.
+	 */
+	protected final class ValueCollector implements OutputMonitor<T> {
+
+		private static final long serialVersionUID = 2305810236734917532L;
+		private final Job job;
+		private final Property<T, ?, ?> prop;
+
+		/**
+		 * @param j
+		 *            the job of the run
+		 * @param p
+		 *            the property attached to the run
+		 */
+		public ValueCollector(final Job j, final Property<T, ?, ?> p) {
+			job = j;
+			prop = p;
+		}
+
+		@Override
+		public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+			stopIfObsolete(env);
+		}
+
+		@Override
+		public void initialized(final IEnvironment<T> env) {
+			stopIfObsolete(env);
+		}
+
+		@Override
+		public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+			deliver(job, job.truncated ? null : prop.getResult());
+		}
+
+		private void stopIfObsolete(final IEnvironment<T> env) {
+			if (!job.truncated && isObsolete(job)) {
+				job.truncated = true;
+				Simulation.stop(env);
+			}
+		}
+	}
+
+}
@@ -8,26 +8,47 @@
  */
 package it.unibo.alchemist.modelchecker;
 
-import it.unibo.alchemist.core.executors.MultithreadedExecutor;
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.implementations.Simulation;
 import it.unibo.alchemist.core.interfaces.ISimulation;
-import it.unibo.alchemist.external.cern.jet.random.engine.MersenneTwister;
-import it.unibo.alchemist.external.cern.jet.random.engine.RandomEngine;
-import it.unibo.alchemist.language.EnvironmentBuilder;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.implementations.BetaPosteriorStopCriterion;
+import it.unibo.alchemist.modelchecker.implementations.CheckpointFile;
+import it.unibo.alchemist.modelchecker.implementations.ConfidenceSequenceStopCriterion;
+import it.unibo.alchemist.modelchecker.implementations.Estimate;
+import it.unibo.alchemist.modelchecker.implementations.ModelCache;
+import it.unibo.alchemist.modelchecker.implementations.ObjectResultStore;
+import it.unibo.alchemist.modelchecker.implementations.SampleRepository;
+import it.unibo.alchemist.modelchecker.implementations.SeedSequence;
+import it.unibo.alchemist.modelchecker.implementations.SerializingResultCodec;
+import it.unibo.alchemist.modelchecker.implementations.WarmUp;
 import it.unibo.alchemist.modelchecker.interfaces.ASMCListener;
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregator;
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregatorVariance;
 import it.unibo.alchemist.modelchecker.interfaces.Property;
 import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregator;
 import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregatorVariance;
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+import it.unibo.alchemist.modelchecker.interfaces.ResultStore;
+import it.unibo.alchemist.modelchecker.interfaces.StopCriterion;
 import it.unibo.alchemist.utils.L;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -54,28 +75,59 @@ import org.xml.sax.SAXException;
  * @param <R>
  *            Final result type
  */
-public abstract class AlchemistASMC<T, D, R> {
+public abstract class AlchemistASMC<T, D, R> extends AbstractASMCCampaign<T> {
+
+	/**
+	 * What to do with the simulations still queued or running when the stop
+	 * condition is met.
+	 */
+	public enum LateSamplePolicy {
+		/**
+		 * Stop them as soon as possible and ignore their results: the estimate
+		 * is the one the stop condition was checked on.
+		 */
+		DISCARD,
+		/**
+		 * Let them run to completion and fold their results into the estimate.
+		 * This changes the sample size after the stop condition was met, which
+		 * is only sound for estimates of a given precision: it voids the
+		 * error bounds of sequential tests and criteria, so
+		 * {@link AlchemistASMCSPRT}, {@link BetaPosteriorStopCriterion} and
+		 * {@link ConfidenceSequenceStopCriterion} reject it.
+		 */
+		FOLD
+	}
 
-	
-	
 	private static final double LOG_MUL = 0.5;
+	private static final int RUN = 0;
+	private static final int PREFIX = 1;
 	private final PropertyAggregator<R, D> aggregator;
 	private final double a;
 	private final double d;
-	private final Semaphore exec = new Semaphore(0);
 	private final int minN;
 	private final int maxN;
-	private static final int SAMPLESTEP = 30;
-	private final MultithreadedExecutor<T> mx = new MultithreadedExecutor<T>() {
-		@Override
-		protected void configureSimulation(final ISimulation<T> s) {
-			final Property<T, ?, D> pclone = property.clone();
-			s.addOutputMonitor(pclone);
-			getpList().add(pclone);
-		}
-	};
-	private int nr;
-	private final List<Property<T, ?, D>> pList;
+	private LateSamplePolicy latePolicy = LateSamplePolicy.DISCARD;
+	private StopCriterion<? super D> criterion;
+	private SampleRepository repository;
+	private ASMCCoordinator coordinator;
+	private WarmUp warmUp;
+	private volatile AtomicReferenceArray<byte[]> snapshots;
+	private volatile int prefixCount;
+	private volatile boolean decided;
+	private long timeBudget;
+	private int runBudget;
+	private volatile boolean timed;
+	private volatile long deadline;
+	private volatile Estimate<R> estimate;
+	private final AtomicLong runTime = new AtomicLong();
+	private final AtomicInteger timedRuns = new AtomicInteger();
+	private volatile int nr;
+	/*
+	 * Created at the start of every experiment rather than at construction,
+	 * so that createResultStore() is never called on a partially constructed
+	 * subclass.
+	 */
+	private volatile ResultStore<D> results;
 	private final Property<T, ?, D> property;
 	private final List<ASMCListener> listeners = new LinkedList<>();
 
@@ -159,10 +211,27 @@ public abstract class AlchemistASMC<T, D, R> {
 		maxN = computeSampleSizeUB(delta, alpha);
 		property = p;
 		aggregator = pa;
-		pList = Collections.synchronizedList(new ArrayList<Property<T, ?, D>>(min));
 	}
 
 	/**
+	 * Runs the experiment. Up to {@link #getQueueDepth()} simulations are kept
+	 * queued or running at any time, the stop condition is checked every time
+	 * a single run completes, and the queue is topped up according to the
+	 * estimated number of samples still required. When a
+	 * {@link StopCriterion} is set, the minimum sample size is ignored and the
+	 * criterion is checked from the very first run. What happens to the runs
+	 * still in flight when the stop condition is met depends on
+	 * {@link #getLateSamplePolicy()}. The experiment also ends when the
+	 * budgets set with {@link #setTimeBudget(long)} and
+	 * {@link #setRunBudget(int)} are spent.
+	 * 
+	 * Run i is seeded with a seed derived from the random seed of the model
+	 * and from i only (see {@link SeedSequence}), and results are considered
+	 * in run order regardless of the order they complete in, so the outcome
+	 * does not depend on the degree of parallelism. If the experiment is
+	 * ended by an exception, {@link #waitForCompletion()} and
+	 * {@link #getResult()} report it.
+	 * 
 	 * @param xmlFilePath
 	 *            Alchemist XML specification to execute
 	 * @param steps
@@ -171,37 +240,582 @@ public abstract class AlchemistASMC<T, D, R> {
 	 *            maximum length of the simulation in simulated time units
 	 */
 	public void execute(final String xmlFilePath, final long steps, final double finalTime) {
-		final ExecutorService ex = Executors.newSingleThreadExecutor();
-		ex.execute(new Runnable() {
-			public void run() {
-				try {
-					nr = minN;
-					final byte[] ba = mx.serializedEnvironment(xmlFilePath);
-					EnvironmentBuilder<T> ebo;
-					ebo = new EnvironmentBuilder<>(xmlFilePath);
-					ebo.buildEnvironment();
-					final RandomEngine random = new MersenneTwister();
-					random.setSeed(ebo.getRandomEngine().getSeed());
-
-					mx.addJob(ba, random, minN, steps, finalTime);
-					mx.waitForCompletion();
-					notifyASMCListeners();
-					while (!stopCondition()) {
-						nr += SAMPLESTEP;
-						// pList.ensureCapacity(INCREASE);
-						mx.addJob(ba, random, SAMPLESTEP, steps, finalTime);
-						mx.waitForCompletion();
+		start(xmlFilePath, steps, finalTime, null, false);
+	}
+
+	/**
+	 * Runs the experiment as {@link #execute(String, long, double)} does, and
+	 * records the result of every run in a checkpoint file, which can be used
+	 * to resume the experiment should it be interrupted.
+	 * 
+	 * @param xmlFilePath
+	 *            Alchemist XML specification to execute
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 * @param checkpoint
+	 *            the checkpoint file. Any existing file is overwritten.
+	 */
+	public void execute(final String xmlFilePath, final long steps, final double finalTime, final File checkpoint) {
+		start(xmlFilePath, steps, finalTime, checkpoint, false);
+	}
+
+	/**
+	 * Resumes an experiment from a checkpoint written by
+	 * {@link #execute(String, long, double, File)}. The results in the
+	 * checkpoint are taken as they are, and only the runs which are not in
+	 * the checkpoint are executed, starting from the first missing run index.
+	 * New results are appended to the same checkpoint. The parameters must be
+	 * the same of the interrupted experiment.
+	 * 
+	 * @param xmlFilePath
+	 *            Alchemist XML specification to execute
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 * @param checkpoint
+	 *            the checkpoint file
+	 */
+	public void resume(final String xmlFilePath, final long steps, final double finalTime, final File checkpoint) {
+		start(xmlFilePath, steps, finalTime, checkpoint, true);
+	}
+
+	private void start(final String xmlFilePath, final long steps, final double finalTime, final File checkpoint, final boolean resume) {
+		if (coordinator != null && warmUp != null && warmUp.getPrefixes() > 1) {
+			throw new IllegalStateException("Distributed experiments support a single warm-up prefix.");
+		}
+		prepare(steps, finalTime);
+		if (latePolicy == LateSamplePolicy.FOLD && !acceptsLateSamples()) {
+			throw new IllegalStateException("Folding late samples voids the error bounds of sequential tests and criteria.");
+		}
+		estimate = null;
+		deadline = System.nanoTime() + timeBudget;
+		timed = timeBudget > 0;
+		launch(new Experiment() {
+			@Override
+			public void run() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+				runExperiment(xmlFilePath, steps, finalTime, checkpoint, resume);
+			}
+		});
+	}
+
+	/**
+	 * Called on the calling thread by every execute and resume method, right
+	 * before the experiment starts. Subclasses can validate their
+	 * configuration and complete it here. This implementation does nothing.
+	 * 
+	 * @param steps
+	 *            maximum length of the runs in steps
+	 * @param finalTime
+	 *            maximum length of the runs in simulated time units
+	 */
+	protected void prepare(final long steps, final double finalTime) {
+	}
+
+	/**
+	 * Tells whether the results of the runs still in flight when the stop
+	 * condition is met can be folded into the estimate (see
+	 * {@link LateSamplePolicy#FOLD}). This implementation refuses them when
+	 * the stop criterion is a sequential one. Sequential tests should
+	 * override it and return false.
+	 * 
+	 * @return true if late samples can be folded
+	 */
+	protected boolean acceptsLateSamples() {
+		return !(criterion instanceof BetaPosteriorStopCriterion || criterion instanceof ConfidenceSequenceStopCriterion);
+	}
+
+	@Override
+	protected void configure(final ISimulation<T> s, final Job job) {
+		if (job.getGroup() == PREFIX) {
+			s.addOutputMonitor(new SnapshotTaker(job.getIndex(), snapshots));
+		} else {
+			collect(s, job, property);
+			s.addOutputMonitor(new RunTimer(job));
+		}
+	}
+
+	/**
+	 * Runs are stopped as soon as the experiment is decided or its deadline
+	 * passes.
+	 */
+	@Override
+	protected boolean isObsolete(final Job job) {
+		return decided || isExpired();
+	}
+
+	private void runExperiment(final String xmlFilePath, final long steps, final double finalTime, final File checkpointFile, final boolean resume)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+		nr = 0;
+		decided = false;
+		runTime.set(0);
+		timedRuns.set(0);
+		results = createResultStore();
+		if (aggregator instanceof IncrementalPropertyAggregator) {
+			((IncrementalPropertyAggregator<R, D>) aggregator).reset();
+		}
+		if (criterion != null) {
+			criterion.reset();
+		}
+		if (isExpired()) {
+			L.warn("The time budget was spent before parsing " + xmlFilePath + ".");
+			return;
+		}
+		final ModelCache.Model model = parse(xmlFilePath);
+		final byte[] ba = model.getEnvironment();
+		final long masterSeed = model.getSeed();
+		File file = checkpointFile;
+		boolean reuse = resume;
+		if (file == null && repository != null) {
+			file = repository.getFile(xmlFilePath, property, steps, finalTime, masterSeed, warmUp);
+			reuse = CheckpointFile.isStarted(file);
+		}
+		final SortedMap<Integer, D> early = new TreeMap<>();
+		CheckpointFile<D> checkpoint = null;
+		if (file != null) {
+			if (reuse) {
+				checkpoint = CheckpointFile.open(file, createResultCodec());
+				if (checkpoint.getMasterSeed() != masterSeed) {
+					checkpoint.close();
+					throw new IOException(file + " belongs to an experiment with a different seed.");
+				}
+				early.putAll(checkpoint.getRecoveredResults());
+			} else {
+				checkpoint = CheckpointFile.create(file, createResultCodec(), masterSeed);
+			}
+		}
+		try {
+			final SeedSequence seeds = new SeedSequence(masterSeed);
+			final byte[][] envs = warmUp == null ? new byte[][] { ba } : simulatePrefixes(ba, seeds);
+			if (envs == null) {
+				L.warn("The time budget was spent during the warm-up.");
+				return;
+			}
+			prefixCount = warmUp == null ? 0 : envs.length;
+			if (coordinator != null) {
+				coordinator.start(envs[0], property, createResultCodec(), masterSeed, steps, finalTime, new ASMCCoordinator.ResultHandler<D>() {
+					@Override
+					public void handle(final int run, final D result) {
+						arrive(run, result);
+					}
+				});
+			}
+			runCampaign(envs, seeds, early, checkpoint, steps, finalTime);
+		} finally {
+			if (coordinator != null) {
+				coordinator.finish();
+			}
+			if (checkpoint != null) {
+				checkpoint.close();
+			}
+		}
+	}
+
+	/*
+	 * Returns null if the deadline passes before every prefix is snapshot:
+	 * prefixes are not started past the deadline, and those running are
+	 * stopped there.
+	 */
+	private byte[][] simulatePrefixes(final byte[] ba, final SeedSequence seeds) throws IOException, InterruptedException {
+		final int k = warmUp.getPrefixes();
+		snapshots = new AtomicReferenceArray<>(k);
+		for (int i = 0; i < k && !isExpired(); i++) {
+			submit(new Job(PREFIX, i), ba, seeds.getEngine(-1L - i), warmUp.getSteps(), warmUp.getTime());
+		}
+		awaitRuns();
+		if (isExpired()) {
+			snapshots = null;
+			return null;
+		}
+		final byte[][] res = new byte[k][];
+		for (int i = 0; i < k; i++) {
+			res[i] = snapshots.get(i);
+			if (res[i] == null) {
+				throw new IOException("Warm-up prefix " + i + " could not be snapshot.");
+			}
+		}
+		snapshots = null;
+		return res;
+	}
+
+	private void runCampaign(final byte[][] envs, final SeedSequence seeds, final SortedMap<Integer, D> early, final CheckpointFile<D> checkpoint, final long steps, final double finalTime)
+			throws IOException, InterruptedException {
+		final int min = criterion == null ? minN : 1;
+		final Set<Integer> recovered = new HashSet<>(early.keySet());
+		int nextRun = 0;
+		/*
+		 * Runs submitted and not ingested yet: results buffered out of order
+		 * count against the queue depth, so the buffer stays bounded.
+		 */
+		int inFlight = 0;
+		int sinceNotification = 0;
+		boolean stop = false;
+		boolean expired = false;
+		boolean waiting = false;
+		while (!stop) {
+			if (waiting) {
+				final Job arrival = awaitArrival();
+				if (arrival == null) {
+					expired = true;
+					decided = true;
+					break;
+				}
+				if (arrival.isTruncated()) {
+					continue;
+				}
+				early.put(arrival.getIndex(), resultOf(arrival));
+				if (checkpoint != null) {
+					checkpoint.append(arrival.getIndex(), resultOf(arrival));
+				}
+			}
+			waiting = true;
+			while (!stop && early.containsKey(nr)) {
+				if (!recovered.remove(nr)) {
+					inFlight--;
+				}
+				ingest(early.remove(nr));
+				sinceNotification++;
+				if (nr >= min) {
+					if (sinceNotification >= getQueueDepth()) {
 						notifyASMCListeners();
+						publishEstimate();
+						sinceNotification = 0;
 					}
-					mx.destroy();
-					exec.release();
-				} catch (InstantiationException | IllegalAccessException | InvocationTargetException | ClassNotFoundException | SAXException | IOException | ParserConfigurationException e) {
-					L.error(e);
+					stop = shouldStop();
+				}
+				stop = stop || runBudget > 0 && nr >= runBudget;
+			}
+			if (stop) {
+				decided = latePolicy == LateSamplePolicy.DISCARD;
+			} else {
+				final int target;
+				if (nr >= min) {
+					final double remaining = criterion == null ? estimateRemainingSamples() : criterion.estimateRemainingSamples();
+					target = (int) Math.max(1, Math.min(getQueueDepth(), remaining));
+				} else {
+					target = Math.max(getQueueDepth(), min - nr);
+				}
+				nextRun = Math.max(nextRun, nr);
+				for (; inFlight < target && canStart(nextRun); nextRun++) {
+					if (!early.containsKey(nextRun)) {
+						if (coordinator == null) {
+							submit(new Job(RUN, nextRun), envs[nextRun % envs.length], seeds.getEngine(nextRun), steps, finalTime);
+						} else {
+							coordinator.submit(nextRun);
+						}
+						inFlight++;
+					}
+				}
+				if (coordinator != null) {
+					coordinator.flush();
+				}
+				if (inFlight == 0) {
+					/*
+					 * The budget does not allow any further run.
+					 */
+					expired = true;
+					decided = true;
+					break;
+				}
+			}
+		}
+		if (nr > 0) {
+			publishEstimate();
+		}
+		if (coordinator == null) {
+			awaitRuns();
+		} else if (latePolicy == LateSamplePolicy.FOLD && !expired) {
+			if (!coordinator.awaitOutstanding()) {
+				L.warn("No worker left: the runs still handed out are not folded into the estimate.");
+				coordinator.cancel();
+			}
+		} else {
+			coordinator.cancel();
+		}
+		if (latePolicy == LateSamplePolicy.FOLD && !expired) {
+			for (Job arrival = pollArrival(0, TimeUnit.NANOSECONDS); arrival != null; arrival = pollArrival(0, TimeUnit.NANOSECONDS)) {
+				if (!arrival.isTruncated()) {
+					early.put(arrival.getIndex(), resultOf(arrival));
+					if (checkpoint != null) {
+						checkpoint.append(arrival.getIndex(), resultOf(arrival));
+					}
+				}
+			}
+			/*
+			 * Results recovered from the checkpoint past the stop were not in
+			 * flight: they stay in the checkpoint only.
+			 */
+			for (final Map.Entry<Integer, D> late : early.entrySet()) {
+				if (!recovered.contains(late.getKey())) {
+					ingest(late.getValue());
 				}
 			}
+			if (nr > 0) {
+				publishEstimate();
+			}
+		}
+		notifyASMCListeners();
+	}
 
-		});
+	/*
+	 * Waits for the next run to be over, up to the deadline if there is one.
+	 * Returns null if the deadline passed first. A distributed experiment
+	 * fails if it is abandoned by all its workers, since no result can
+	 * arrive.
+	 */
+	private Job awaitArrival() throws InterruptedException, IOException {
+		if (coordinator == null) {
+			return timed ? pollArrival(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) : takeArrival();
+		}
+		while (true) {
+			long wait = TimeUnit.MILLISECONDS.toNanos(coordinator.getIdleTimeout());
+			if (timed) {
+				wait = Math.min(wait, deadline - System.nanoTime());
+			}
+			final Job arrival = pollArrival(wait, TimeUnit.NANOSECONDS);
+			if (arrival != null) {
+				return arrival;
+			}
+			if (isExpired()) {
+				return null;
+			}
+			if (coordinator.isAbandoned()) {
+				throw new IOException("No worker connected for " + coordinator.getIdleTimeout() + " ms.");
+			}
+		}
+	}
+
+	/*
+	 * A run can be started if it is within the run budget, and if a run of
+	 * average duration started now would end before the deadline.
+	 */
+	private boolean canStart(final int run) {
+		if (runBudget > 0 && run >= runBudget) {
+			return false;
+		}
+		if (timed) {
+			final int count = timedRuns.get();
+			final long expected = count == 0 ? 0 : runTime.get() / count;
+			return deadline - System.nanoTime() > expected;
+		}
+		return true;
+	}
+
+	private boolean isExpired() {
+		return timed && deadline - System.nanoTime() <= 0;
+	}
+
+	private void publishEstimate() {
+		final R res = aggregator instanceof IncrementalPropertyAggregator
+				? ((IncrementalPropertyAggregator<R, D>) aggregator).aggregate()
+				: aggregator.aggregate(results.asPropertyList());
+		estimate = new Estimate<>(res, computeHalfWidth(), nr);
+	}
+
+	/**
+	 * Computes the half width of the interval achieved with the runs
+	 * completed so far: with {@link #computeDeltaDynamic(double, int, double)}
+	 * when the aggregator provides the variance, with
+	 * {@link #computeDeltaUB(int, double)} otherwise. Only called by the
+	 * thread running the experiment.
+	 * 
+	 * @return the half width of the interval
+	 */
+	protected double computeHalfWidth() {
+		if (aggregator instanceof PropertyAggregatorVariance && nr > 1) {
+			return computeDeltaDynamic(getS(), nr, a) / 2;
+		}
+		return nr == 0 ? Double.POSITIVE_INFINITY : computeDeltaUB(nr, a);
+	}
+
+	/**
+	 * Estimates how many more runs are needed before the stop condition is
+	 * met. This implementation uses the current variance when the aggregator
+	 * provides it, and the distance from {@link #getMaxN()} otherwise.
+	 * Subclasses with different stop conditions should override it.
+	 * 
+	 * @return the estimated number of samples still required
+	 */
+	protected double estimateRemainingSamples() {
+		if (aggregator instanceof PropertyAggregatorVariance && nr > 1) {
+			final double s = getS();
+			final double t = new TDistribution(nr - 1).inverseCumulativeProbability(1 - a / 2);
+			final double required = Math.pow(2 * t * s / d, 2);
+			return Math.ceil(required) - nr;
+		}
+		return maxN - nr;
+	}
 
+	/**
+	 * @return the stop criterion replacing {@link #stopCondition()}, or null if
+	 *         the built-in stop condition is used
+	 */
+	public StopCriterion<? super D> getStopCriterion() {
+		return criterion;
+	}
+
+	/**
+	 * @param c
+	 *            a stop criterion to use in place of {@link #stopCondition()},
+	 *            or null to restore the built-in stop condition. Must be set
+	 *            before calling execute.
+	 */
+	public void setStopCriterion(final StopCriterion<? super D> c) {
+		criterion = c;
+	}
+
+	/**
+	 * @return the repository results are stored in and reused from, or null
+	 */
+	public SampleRepository getSampleRepository() {
+		return repository;
+	}
+
+	/**
+	 * Sets a repository to store the result of every run in. When
+	 * {@link #execute(String, long, double)} is called with a model,
+	 * property, steps, final time and seed whose results are already in the
+	 * repository, those results are reused and only the additional runs are
+	 * simulated. Explicit checkpoint files take precedence over the
+	 * repository.
+	 * 
+	 * @param repo
+	 *            the repository, or null to disable it
+	 */
+	public void setSampleRepository(final SampleRepository repo) {
+		repository = repo;
+	}
+
+	/**
+	 * @return the warm-up the runs branch from, or null
+	 */
+	public WarmUp getWarmUp() {
+		return warmUp;
+	}
+
+	/**
+	 * Makes the runs of the next experiments branch from warm-up prefixes
+	 * instead of starting from the initial state of the model. Each prefix is
+	 * simulated once with its own seed, and snapshot by serializing the
+	 * environment. Run i then restores prefix i modulo the number of prefixes
+	 * and goes on with the random engine of run i. Properties only observe the
+	 * runs after the branch point.
+	 * 
+	 * Runs branching from the same prefix are not independent: the confidence
+	 * of the result holds only if the prefix is irrelevant for the property.
+	 * {@link #getPrefixCount()} reports how many prefixes were used.
+	 * 
+	 * @param w
+	 *            the warm-up, or null to start every run from the initial
+	 *            state
+	 */
+	public void setWarmUp(final WarmUp w) {
+		warmUp = w;
+	}
+
+	/**
+	 * @return the number of independent warm-up prefixes the runs of the last
+	 *         experiment branched from, or 0 if every run started from the
+	 *         initial state
+	 */
+	public int getPrefixCount() {
+		return prefixCount;
+	}
+
+	/**
+	 * @return the coordinator runs are distributed through, or null if they
+	 *         are executed locally
+	 */
+	public ASMCCoordinator getCoordinator() {
+		return coordinator;
+	}
+
+	/**
+	 * Distributes the runs of the next experiments to the workers connected
+	 * to a coordinator instead of executing them locally. The stop condition
+	 * is still checked here, and the results do not change, since the seed of
+	 * every run only depends on the master seed and the run index. An
+	 * experiment left with no worker for the idle timeout of the coordinator
+	 * fails.
+	 * 
+	 * @param c
+	 *            the coordinator, or null to execute runs locally
+	 */
+	public void setCoordinator(final ASMCCoordinator c) {
+		coordinator = c;
+	}
+
+	/**
+	 * @return what happens to the runs in flight once the stop condition is
+	 *         met
+	 */
+	public LateSamplePolicy getLateSamplePolicy() {
+		return latePolicy;
+	}
+
+	/**
+	 * @param policy
+	 *            what to do with the runs in flight once the stop condition is
+	 *            met. Must be set before calling execute.
+	 */
+	public void setLateSamplePolicy(final LateSamplePolicy policy) {
+		latePolicy = policy;
+	}
+
+	/**
+	 * @return the wall clock budget of an experiment in milliseconds, 0 if
+	 *         there is none
+	 */
+	public long getTimeBudget() {
+		return TimeUnit.NANOSECONDS.toMillis(timeBudget);
+	}
+
+	/**
+	 * Sets a wall clock budget for the next experiments, counted from the
+	 * call to execute and including parsing and warm-up. No run is started
+	 * unless a run of average duration would end before the deadline, the
+	 * runs still in flight at the deadline are stopped and discarded
+	 * regardless of {@link #getLateSamplePolicy()}, and the estimate is the
+	 * one of the runs completed so far, whose interval can be wider than
+	 * delta: see {@link #getHalfWidth()}. Parsing and warm-up prefixes are not
+	 * started past the deadline, and the prefixes running at the deadline are
+	 * stopped. Until the first estimate is published, {@link #getResult()}
+	 * returns null: this is also the final result of an experiment whose
+	 * budget is spent before any estimate.
+	 * 
+	 * @param millis
+	 *            the budget in milliseconds, or 0 for no budget
+	 */
+	public void setTimeBudget(final long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("The time budget can not be negative, " + millis + " given.");
+		}
+		timeBudget = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * @return the maximum number of runs of an experiment, 0 if there is no
+	 *         limit
+	 */
+	public int getRunBudget() {
+		return runBudget;
+	}
+
+	/**
+	 * Sets the maximum number of runs of the next experiments. Runs beyond
+	 * the budget are never started, and the experiment stops when the budget
+	 * is spent even if the stop condition is not met.
+	 * 
+	 * @param runs
+	 *            the maximum number of runs, or 0 for no limit
+	 */
+	public void setRunBudget(final int runs) {
+		if (runs < 0) {
+			throw new IllegalArgumentException("The run budget can not be negative, " + runs + " given.");
+		}
+		runBudget = runs;
 	}
 
 	/**
@@ -227,24 +841,62 @@ public abstract class AlchemistASMC<T, D, R> {
 
 	/**
 	 * Waits for all the simulations to finish and returns the aggregated
-	 * result.
+	 * result. If a time budget is set, it never waits past the deadline: if
+	 * the experiment is still running, it returns the last published
+	 * estimate instead.
 	 * 
-	 * @return the final aggregated result
+	 * @return the final aggregated result, or the last published one if the
+	 *         deadline passed before the experiment ended. Null if a time
+	 *         budget is set and no estimate was published before the
+	 *         deadline.
+	 * @throws IllegalStateException
+	 *             if the experiment was ended by an exception, which is the
+	 *             cause
 	 */
 	public R getResult() {
-		waitForCompletion();
-		return aggregator.aggregate(getpList());
+		if (!awaitUntilDeadline() || timed && estimate == null) {
+			final Estimate<R> e = estimate;
+			return e == null ? null : e.getResult();
+		}
+		if (aggregator instanceof IncrementalPropertyAggregator) {
+			return ((IncrementalPropertyAggregator<R, D>) aggregator).aggregate();
+		}
+		return aggregator.aggregate(results.asPropertyList());
 	}
 
 	/**
-	 * Waits until all the queued jobs are completed.
+	 * @return the last estimate published by the running experiment, or null
+	 *         if none was published yet. Estimates are published every
+	 *         {@link #getQueueDepth()} runs after the minimum sample size,
+	 *         and when the experiment ends. Never blocks.
 	 */
-	public void waitForCompletion() {
-		try {
-			exec.acquire();
-		} catch (InterruptedException e) {
-			L.error(e);
+	public Estimate<R> getEstimate() {
+		return estimate;
+	}
+
+	/**
+	 * Waits for the experiment to finish, but not past the deadline, and
+	 * returns the half width of the interval achieved.
+	 * 
+	 * @return the half width of the interval of the last published estimate,
+	 *         infinite if none was published
+	 */
+	public double getHalfWidth() {
+		awaitUntilDeadline();
+		final Estimate<R> e = estimate;
+		return e == null ? Double.POSITIVE_INFINITY : e.getHalfWidth();
+	}
+
+	/*
+	 * Returns true if the experiment is over, false if the deadline passed
+	 * first.
+	 */
+	private boolean awaitUntilDeadline() {
+		if (!timed) {
+			waitForCompletion();
+			return true;
 		}
+		return awaitCompletion(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
 	}
 
 	private static int computeMinimum(final double interval, final double confidence) {
@@ -273,11 +925,20 @@ public abstract class AlchemistASMC<T, D, R> {
 	 * @return True iff interval size is little enough
 	 */
 	protected boolean intervalSizeReached() {
-		final double s = ((PropertyAggregatorVariance<R, D>) aggregator).getS(getpList());
-		final double d0 = computeDeltaDynamic(s, nr, a);
+		final double d0 = computeDeltaDynamic(getS(), nr, a);
 		return d0 < d;
 	}
 
+	/**
+	 * @return the value of the variance function s (see manual) for the runs
+	 *         completed so far. Requires a {@link PropertyAggregatorVariance}.
+	 */
+	protected double getS() {
+		return aggregator instanceof IncrementalPropertyAggregatorVariance
+				? ((IncrementalPropertyAggregatorVariance<R, D>) aggregator).getS()
+				: getSFromResults();
+	}
+
 	/**
 	 * Computes interval size according to dynamic criterion (see manual). A
 	 * lower size interval could be obtained with computeDeltaStatic.
@@ -314,6 +975,10 @@ public abstract class AlchemistASMC<T, D, R> {
 	 */
 	protected abstract boolean stopCondition();
 
+	private boolean shouldStop() {
+		return criterion == null ? stopCondition() : criterion.isSatisfied();
+	}
+
 	/**
 	 * @return minimum sample size, wheter computed or imposed by user
 	 */
@@ -348,11 +1013,59 @@ public abstract class AlchemistASMC<T, D, R> {
 	 */
 	protected abstract void notifyASMCListeners();
 
+	private double getSFromResults() {
+		return ((PropertyAggregatorVariance<R, D>) aggregator).getS(results.asPropertyList());
+	}
+
+	/*
+	 * Only ever called by the thread running the experiment, which is thus the
+	 * only writer of the result store, the aggregator and the stop criterion.
+	 */
+	private void ingest(final D result) {
+		results.add(result);
+		if (aggregator instanceof IncrementalPropertyAggregator) {
+			((IncrementalPropertyAggregator<R, D>) aggregator).add(result);
+		}
+		if (criterion != null) {
+			criterion.update(result);
+		}
+		nr = results.size();
+	}
+
+	/**
+	 * Builds the store the results are collected into, once extracted from
+	 * their properties. Called at the start of every experiment. This
+	 * implementation keeps references to the results: subclasses should
+	 * return a more compact store when the result type allows it.
+	 * 
+	 * @return a new, empty result store
+	 */
+	protected ResultStore<D> createResultStore() {
+		return new ObjectResultStore<>();
+	}
+
+	/**
+	 * Builds the codec used to write the results to checkpoints and to
+	 * exchange them with the workers. This implementation relies on Java
+	 * serialization, and only decodes the classes
+	 * {@link SerializingResultCodec} allows by default: subclasses whose
+	 * results are made of other classes must allow them explicitly, and should
+	 * return a more compact codec when the result type allows it.
+	 * 
+	 * @return a codec for the results
+	 */
+	protected ResultCodec<D> createResultCodec() {
+		return new SerializingResultCodec<>();
+	}
+
 	/**
-	 * @return the pList
+	 * @return the results of the runs completed so far, or null if no
+	 *         experiment was started. The store is written only by the thread
+	 *         running the experiment: other threads should read it only once
+	 *         the experiment is over.
 	 */
-	protected List<Property<T, ?, D>> getpList() {
-		return pList;
+	protected ResultStore<D> getResults() {
+		return results;
 	}
 
 	/**
@@ -361,4 +1074,106 @@ public abstract class AlchemistASMC<T, D, R> {
 	protected List<ASMCListener> getListeners() {
 		return listeners;
 	}
-}
\ No newline at end of file
+
+	/*
+	 * Results computed by the workers of a distributed experiment.
+	 */
+	private void arrive(final int run, final D result) {
+		if (!decided) {
+			deliver(new Job(RUN, run), result);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private D resultOf(final Job job) {
+		return (D) job.getResult();
+	}
+
+	/**
+	 * Snapshots the environment at the end of a warm-up prefix, unless the
+	 * prefix is stopped at the deadline.
+	 */
+	private final class SnapshotTaker implements OutputMonitor<T> {
+
+		private static final long serialVersionUID = 8914350326817744379L;
+		private final int prefix;
+		private final AtomicReferenceArray<byte[]> target;
+		private boolean stopped;
+
+		private SnapshotTaker(final int index, final AtomicReferenceArray<byte[]> snaps) {
+			prefix = index;
+			target = snaps;
+		}
+
+		@Override
+		public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+			stopIfExpired(env);
+		}
+
+		@Override
+		public void initialized(final IEnvironment<T> env) {
+			stopIfExpired(env);
+		}
+
+		@Override
+		public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+			if (!stopped) {
+				try {
+					target.set(prefix, snapshot(env));
+				} catch (IOException e) {
+					L.error(e);
+				}
+			}
+		}
+
+		private void stopIfExpired(final IEnvironment<T> env) {
+			if (!stopped && isExpired()) {
+				stopped = true;
+				Simulation.stop(env);
+			}
+		}
+	}
+
+	/**
+	 * @param env
+	 *            the environment
+	 * @return the environment serialized in the form the executor accepts
+	 * @throws IOException
+	 *             if the environment can not be serialized
+	 */
+	static byte[] snapshot(final IEnvironment<?> env) throws IOException {
+		return ModelCache.serialize(env);
+	}
+
+	/**
+	 * Measures how long the runs which are not truncated take, so that no run
+	 * is started if it is not expected to end before the deadline.
+	 */
+	private final class RunTimer implements OutputMonitor<T> {
+
+		private static final long serialVersionUID = -6407016563542519925L;
+		private final Job job;
+		private long began;
+
+		private RunTimer(final Job j) {
+			job = j;
+		}
+
+		@Override
+		public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+		}
+
+		@Override
+		public void initialized(final IEnvironment<T> env) {
+			began = System.nanoTime();
+		}
+
+		@Override
+		public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+			if (!job.isTruncated()) {
+				runTime.addAndGet(System.nanoTime() - began);
+				timedRuns.incrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.modelchecker.implementations.ModelCache;
+import it.unibo.alchemist.modelchecker.implementations.RunningStatistics;
+import it.unibo.alchemist.modelchecker.implementations.SeedSequence;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * Classifies the points of a parameter grid as above or below a threshold of
+ * the mean of a property (booleans are mapped to 1 and 0), simulating only
+ * where the answer is unclear. The model is an XML template, instantiated as
+ * in {@link AlchemistASMCSweep}, and the parameters must be numeric.
+ *
+ * The mean over the whole grid is predicted by a Nadaraya-Watson kernel
+ * regression of the runs gathered so far, with a gaussian kernel on the
+ * coordinates scaled to [0, 1]. The local variance at a point is the
+ * kernel-weighted spread of the runs around the prediction, so the standard
+ * error of the prediction grows both with noise and with the distance from
+ * the simulated points. The standard error does not account for the bias of
+ * the regression, which is large where the mean changes within a bandwidth:
+ * far away runs could make it small for a point whose prediction is wrong.
+ * Hence only nearby evidence counts towards the local number of runs at a
+ * point, which is the kernel-weighted count of the runs simulated within one
+ * bandwidth from it. A point is decided when its local number of runs is at
+ * least the minimum, and the normal interval of the prediction excludes the
+ * threshold. Since the bias is not accounted for, alpha is the nominal
+ * misclassification probability of a single point, not a guarantee. At
+ * every round, batches of runs go to the undecided points
+ * with the highest probability of being misclassified, until every point is
+ * decided or the budget of runs is spent. A round submits at most as many
+ * runs as the queue depth, and always visits at least one point. Points
+ * decided by their neighbours are never simulated, nor parsed.
+ *
+ * @author Danilo Pianini
+ *
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCAdaptive<T> extends AbstractASMCCampaign<T> {
+
+	/**
+	 * Column of the predicted mean in the result matrix.
+	 */
+	public static final int PREDICTION = 0;
+	/**
+	 * Column of the standard error of the prediction in the result matrix.
+	 */
+	public static final int STANDARD_ERROR = 1;
+	/**
+	 * Column of the local number of runs in the result matrix: the
+	 * kernel-weighted number of runs simulated within one bandwidth.
+	 */
+	public static final int LOCAL_RUNS = 2;
+	/**
+	 * Column of the number of runs simulated at the point in the result
+	 * matrix.
+	 */
+	public static final int RUNS = 3;
+	private static final int COLUMNS = 4;
+	/*
+	 * Each simulated grid point is parsed once from a temporary file: it must
+	 * not evict the models cached for other experiments.
+	 */
+	private static final ModelCache POINTS = new ModelCache(0);
+	private final Property<T, ?, ?> property;
+	private final double threshold;
+	private final double z;
+	private final double bandwidth;
+	private final int minN;
+	private final int batch;
+	private final int budget;
+	private volatile List<Map<String, String>> points = Collections.emptyList();
+	private volatile double[][] results = new double[0][];
+	private volatile int totalRuns;
+
+	/**
+	 * Construct an instance with given parameters.
+	 *
+	 * @param p
+	 *            property to estimate, numeric or boolean
+	 * @param thr
+	 *            the threshold the mean is compared against
+	 * @param alpha
+	 *            nominal probability of misclassifying a point
+	 * @param h
+	 *            bandwidth of the kernel, as a fraction of the range of each
+	 *            parameter
+	 * @param min
+	 *            minimum number of runs within a bandwidth, kernel-weighted,
+	 *            to decide a point
+	 * @param runsPerVisit
+	 *            number of runs simulated at a point every time it is chosen
+	 * @param maxRuns
+	 *            maximum total number of runs
+	 */
+	public AlchemistASMCAdaptive(final Property<T, ?, ?> p, final double thr, final double alpha, final double h, final int min, final int runsPerVisit, final int maxRuns) {
+		if (h <= 0 || min < 1 || runsPerVisit < 1 || maxRuns < runsPerVisit) {
+			throw new IllegalArgumentException("Bandwidth, minimum and batch must be positive, and the budget must allow a batch.");
+		}
+		property = p;
+		threshold = thr;
+		z = new NormalDistribution().inverseCumulativeProbability(1 - alpha / 2);
+		bandwidth = h;
+		minN = min;
+		batch = runsPerVisit;
+		budget = maxRuns;
+	}
+
+	/**
+	 * Runs the experiment. Run i of a point is seeded with the seed of run i
+	 * of the instance of that point. The instances are written in a
+	 * temporary directory, deleted at the end of the experiment.
+	 *
+	 * @param xmlTemplatePath
+	 *            Alchemist XML template
+	 * @param parameters
+	 *            the values of each parameter
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 */
+	public void execute(final String xmlTemplatePath, final Map<String, ? extends List<? extends Number>> parameters, final long steps, final double finalTime) {
+		final List<Map<String, String>> grid = AlchemistASMCSweep.grid(parameters);
+		final double[][] coords = new double[grid.size()][parameters.size()];
+		int dim = 0;
+		for (final Map.Entry<String, ? extends List<? extends Number>> param : parameters.entrySet()) {
+			double lo = Double.POSITIVE_INFINITY;
+			double hi = Double.NEGATIVE_INFINITY;
+			for (final Number v : param.getValue()) {
+				lo = Math.min(lo, v.doubleValue());
+				hi = Math.max(hi, v.doubleValue());
+			}
+			for (int i = 0; i < coords.length; i++) {
+				final double v = Double.parseDouble(grid.get(i).get(param.getKey()));
+				coords[i][dim] = hi > lo ? (v - lo) / (hi - lo) : 0;
+			}
+			dim++;
+		}
+		launch(new Experiment() {
+			@Override
+			public void run() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+				runExperiment(xmlTemplatePath, grid, coords, steps, finalTime);
+			}
+		});
+	}
+
+	@Override
+	protected void configure(final ISimulation<T> s, final Job job) {
+		collect(s, job, property);
+	}
+
+	private void runExperiment(final String xmlTemplatePath, final List<Map<String, String>> grid, final double[][] coords, final long steps, final double finalTime)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+		final int k = grid.size();
+		points = Collections.unmodifiableList(grid);
+		totalRuns = 0;
+		final String template = AlchemistASMCSweep.readTemplate(xmlTemplatePath);
+		final Path dir = Files.createTempDirectory("asmc-adaptive");
+		final byte[][] envs = new byte[k][];
+		final SeedSequence[] seeds = new SeedSequence[k];
+		final RunningStatistics[] stats = new RunningStatistics[k];
+		final List<Integer> simulated = new ArrayList<>();
+		for (int i = 0; i < k; i++) {
+			stats[i] = new RunningStatistics();
+		}
+		try {
+			double[][] res = fit(coords, stats, simulated);
+			publish(res);
+			for (int spent = 0; spent < budget;) {
+				final double[] local = new double[k];
+				final boolean[] chosen = new boolean[k];
+				int round = 0;
+				for (int i = 0; i < k; i++) {
+					local[i] = res[i][LOCAL_RUNS];
+				}
+				for (int next = mostUncertain(res, local, chosen); next >= 0 && round < getQueueDepth() && spent < budget; next = mostUncertain(res, local, chosen)) {
+					chosen[next] = true;
+					if (envs[next] == null) {
+						simulated.add(next);
+						final ModelCache.Model model = POINTS.get(AlchemistASMCSweep.instantiate(template, grid.get(next), dir, next));
+						envs[next] = model.getEnvironment();
+						seeds[next] = new SeedSequence(model.getSeed());
+					}
+					final int runs = Math.min(batch, budget - spent);
+					for (int r = 0; r < runs; r++) {
+						final int run = stats[next].getCount() + r;
+						submit(new Job(next, run), envs[next], seeds[next].getEngine(run), steps, finalTime);
+					}
+					for (int i = 0; i < k; i++) {
+						local[i] += nearbyKernel(coords[i], coords[next]) * runs;
+					}
+					round += runs;
+					spent += runs;
+				}
+				if (round == 0) {
+					break;
+				}
+				for (int r = 0; r < round; r++) {
+					final Job arrival = takeArrival();
+					stats[arrival.getGroup()].add(arrival.getValue());
+				}
+				totalRuns = spent;
+				res = fit(coords, stats, simulated);
+				publish(res);
+			}
+		} finally {
+			AlchemistASMCSweep.deleteAll(dir);
+		}
+	}
+
+	/*
+	 * Squared distance in bandwidths.
+	 */
+	private double distance(final double[] x, final double[] y) {
+		double dist = 0;
+		for (int c = 0; c < x.length; c++) {
+			final double diff = (x[c] - y[c]) / bandwidth;
+			dist += diff * diff;
+		}
+		return dist;
+	}
+
+	private double kernel(final double[] x, final double[] y) {
+		return Math.exp(-distance(x, y) / 2);
+	}
+
+	/*
+	 * The kernel, truncated to zero beyond one bandwidth.
+	 */
+	private double nearbyKernel(final double[] x, final double[] y) {
+		final double dist = distance(x, y);
+		return dist <= 1 ? Math.exp(-dist / 2) : 0;
+	}
+
+	/*
+	 * Kernel regression of the runs gathered so far: prediction, standard
+	 * error, local number of runs within a bandwidth and own number of runs
+	 * of every point. Only the simulated points contribute, so the cost is
+	 * linear in the grid.
+	 */
+	private double[][] fit(final double[][] coords, final RunningStatistics[] stats, final List<Integer> simulated) {
+		final int k = stats.length;
+		final double[][] res = new double[k][COLUMNS];
+		final double[] w = new double[simulated.size()];
+		for (int i = 0; i < k; i++) {
+			double count = 0;
+			double nearby = 0;
+			double sum = 0;
+			for (int s = 0; s < w.length; s++) {
+				final RunningStatistics st = stats[simulated.get(s)];
+				w[s] = kernel(coords[i], coords[simulated.get(s)]) * st.getCount();
+				count += w[s];
+				nearby += nearbyKernel(coords[i], coords[simulated.get(s)]) * st.getCount();
+				sum += w[s] * st.getMean();
+			}
+			final double mean = sum / count;
+			double spread = 0;
+			for (int s = 0; s < w.length; s++) {
+				final RunningStatistics st = stats[simulated.get(s)];
+				final int n = st.getCount();
+				final double dev = st.getMean() - mean;
+				final double within = n > 1 ? st.getVariance() * (n - 1) / n : 0;
+				spread += w[s] * (within + dev * dev);
+			}
+			res[i][PREDICTION] = count > 0 ? mean : Double.NaN;
+			res[i][STANDARD_ERROR] = count > 0 ? Math.sqrt(spread / count / count) : Double.POSITIVE_INFINITY;
+			res[i][LOCAL_RUNS] = nearby;
+			res[i][RUNS] = stats[i].getCount();
+		}
+		return res;
+	}
+
+	/*
+	 * The undecided point, not chosen yet in this round, with the highest
+	 * probability of misclassification, ties going to the point with the
+	 * fewest local runs, counting the runs already planned in this round. The
+	 * standard error is scaled as if the planned runs were already done.
+	 * Returns -1 if every point is decided or chosen.
+	 */
+	private int mostUncertain(final double[][] res, final double[] local, final boolean[] chosen) {
+		int best = -1;
+		double bestScore = -1;
+		for (int i = 0; i < res.length; i++) {
+			if (!chosen[i] && !isDecided(res[i])) {
+				final double shrink = res[i][LOCAL_RUNS] > 0 ? Math.sqrt(res[i][LOCAL_RUNS] / local[i]) : 1;
+				final double score = misclassification(res[i][PREDICTION], res[i][STANDARD_ERROR] * shrink);
+				if (score > bestScore || score == bestScore && local[i] < local[best]) {
+					best = i;
+					bestScore = score;
+				}
+			}
+		}
+		return best;
+	}
+
+	private double misclassification(final double mean, final double se) {
+		if (Double.isNaN(mean) || Double.isInfinite(se)) {
+			return 0.5;
+		}
+		if (se == 0) {
+			return mean == threshold ? 0.5 : 0;
+		}
+		return new NormalDistribution().cumulativeProbability(-Math.abs(mean - threshold) / se);
+	}
+
+	private boolean isDecided(final double[] row) {
+		return row[LOCAL_RUNS] >= minN && Math.abs(row[PREDICTION] - threshold) > z * row[STANDARD_ERROR];
+	}
+
+	private synchronized void publish(final double[][] res) {
+		results = res;
+	}
+
+	/**
+	 * @return the points of the last experiment, each mapping the name of
+	 *         every parameter to its value. The last parameter varies
+	 *         fastest.
+	 */
+	public List<Map<String, String>> getPoints() {
+		return points;
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the result matrix. Row
+	 * i refers to point i of {@link #getPoints()}, and the columns are
+	 * {@link #PREDICTION}, {@link #STANDARD_ERROR}, {@link #LOCAL_RUNS} and
+	 * {@link #RUNS}.
+	 *
+	 * @return the result matrix
+	 */
+	public double[][] getResults() {
+		waitForCompletion();
+		return getPartialResults();
+	}
+
+	/**
+	 * Returns the result matrix as of the last completed round, without
+	 * waiting for the experiment to finish.
+	 *
+	 * @return the result matrix, in the layout of {@link #getResults()}
+	 */
+	public synchronized double[][] getPartialResults() {
+		final double[][] res = new double[results.length][];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = results[i].clone();
+		}
+		return res;
+	}
+
+	/**
+	 * Waits for the experiment to finish and classifies the points.
+	 *
+	 * @return for every point, 1 if the mean is above the threshold, -1 if it
+	 *         is below, 0 if the budget ran out before deciding
+	 */
+	public int[] getClassification() {
+		final double[][] res = getResults();
+		final int[] cls = new int[res.length];
+		for (int i = 0; i < res.length; i++) {
+			if (isDecided(res[i])) {
+				cls[i] = res[i][PREDICTION] > threshold ? 1 : -1;
+			}
+		}
+		return cls;
+	}
+
+	/**
+	 * @return the number of runs completed so far
+	 */
+	public int getTotalRuns() {
+		return totalRuns;
+	}
+
+}
@@ -8,9 +8,13 @@
  */
 package it.unibo.alchemist.modelchecker;
 
+import it.unibo.alchemist.modelchecker.implementations.BooleanResultCodec;
+import it.unibo.alchemist.modelchecker.implementations.BooleanResultStore;
 import it.unibo.alchemist.modelchecker.interfaces.Property;
 import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregator;
 import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregatorVariance;
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+import it.unibo.alchemist.modelchecker.interfaces.ResultStore;
 
 /**
  * 
@@ -68,6 +72,21 @@ public class AlchemistASMCBoolean<T> extends AlchemistASMC<T, Boolean, Double> {
 		}
 	}
 
+	@Override
+	protected double estimateRemainingSamples() {
+		return Math.min(super.estimateRemainingSamples(), getMaxN() - getN());
+	}
+
+	@Override
+	protected ResultCodec<Boolean> createResultCodec() {
+		return new BooleanResultCodec();
+	}
+
+	@Override
+	protected ResultStore<Boolean> createResultStore() {
+		return new BooleanResultStore();
+	}
+
 	@Override
 	protected void notifyASMCListeners() {
 		// TODO should be implemented
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.modelchecker.implementations.ControlVariateAggregator;
+import it.unibo.alchemist.modelchecker.implementations.PropertySet;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.util.List;
+
+/**
+ * 
+ * Approximate Model Checker for the mean of a numeric property, using
+ * control variates to reduce the variance: auxiliary properties with known
+ * means are evaluated on the same runs, and the estimate is corrected with
+ * their deviation from the known means (see {@link ControlVariateAggregator}).
+ * The stop condition is the one of {@link AlchemistASMCNumeric}, computed on
+ * the reduced variance, so that fewer runs are required the more the
+ * auxiliary properties are correlated with the main one.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCControlVariate<T> extends AlchemistASMC<T, Object[], Double> {
+
+	private final ControlVariateAggregator cv;
+
+	/**
+	 * Construct an instance with given parameters.
+	 * 
+	 * @param delta
+	 *            approximation
+	 * @param alpha
+	 *            confidence
+	 * @param p
+	 *            property to verify
+	 * @param aux
+	 *            auxiliary properties, numeric or boolean
+	 * @param auxMeans
+	 *            the known means of the auxiliary properties, in order
+	 */
+	public AlchemistASMCControlVariate(final double delta, final double alpha, final Property<T, ?, ? extends Number> p, final List<? extends Property<T, ?, ?>> aux, final double... auxMeans) {
+		this(delta, alpha, buildSet(p, aux, auxMeans), new ControlVariateAggregator(auxMeans));
+	}
+
+	private AlchemistASMCControlVariate(final double delta, final double alpha, final PropertySet<T> ps, final ControlVariateAggregator pa) {
+		super(delta, alpha, ps, pa);
+		cv = pa;
+	}
+
+	private static <T> PropertySet<T> buildSet(final Property<T, ?, ? extends Number> p, final List<? extends Property<T, ?, ?>> aux, final double... auxMeans) {
+		if (aux.size() != auxMeans.length) {
+			throw new IllegalArgumentException(aux.size() + " auxiliary properties, but " + auxMeans.length + " known means.");
+		}
+		final PropertySet<T> res = new PropertySet<>();
+		res.addProperty(p);
+		for (final Property<T, ?, ?> a : aux) {
+			res.addProperty(a);
+		}
+		return res;
+	}
+
+	/**
+	 * @return the coefficients of the auxiliary properties estimated so far
+	 */
+	public double[] getCoefficients() {
+		return cv.getCoefficients();
+	}
+
+	@Override
+	protected boolean stopCondition() {
+		return intervalSizeReached();
+	}
+
+	@Override
+	protected void notifyASMCListeners() {
+	}
+
+}
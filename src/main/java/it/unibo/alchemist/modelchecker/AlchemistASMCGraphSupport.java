@@ -10,9 +10,13 @@ package it.unibo.alchemist.modelchecker;
 
 import java.util.Arrays;
 
+import it.unibo.alchemist.modelchecker.implementations.NumericResultCodec;
+import it.unibo.alchemist.modelchecker.implementations.NumericResultStore;
 import it.unibo.alchemist.modelchecker.interfaces.ASMCListener;
 import it.unibo.alchemist.modelchecker.interfaces.Property;
 import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregator;
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+import it.unibo.alchemist.modelchecker.interfaces.ResultStore;
 
 /**
  * 
@@ -66,15 +70,29 @@ public class AlchemistASMCGraphSupport<T> extends AlchemistASMC<T, Double, Doubl
 		return getN() >= getMaxN();
 	}
 
+	@Override
+	protected ResultCodec<Double> createResultCodec() {
+		return new NumericResultCodec<>();
+	}
+
+	@Override
+	protected ResultStore<Double> createResultStore() {
+		return new NumericResultStore<>();
+	}
+
+	@Override
+	protected double estimateRemainingSamples() {
+		return getMaxN() - getN();
+	}
+
 	@Override
 	protected void notifyASMCListeners() {
-		Double[] da = new Double[getpList().size()];
-		synchronized (getpList()) {
-			for (int i = 0; i < da.length; i++) {
-				da[i] = (Double) getpList().get(i).getResult();
-			}
+		final double[] values = ((NumericResultStore<Double>) getResults()).toDoubleArray();
+		Arrays.sort(values);
+		final Double[] da = new Double[values.length];
+		for (int i = 0; i < da.length; i++) {
+			da[i] = values[i];
 		}
-		Arrays.sort(da);
 		for (final ASMCListener l : getListeners()) {
 			l.batchDone(da);
 		}
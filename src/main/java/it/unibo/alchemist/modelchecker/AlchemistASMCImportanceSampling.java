@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.modelchecker.implementations.Weighted;
+import it.unibo.alchemist.modelchecker.implementations.WeightedAggregator;
+import it.unibo.alchemist.modelchecker.implementations.WeightedProperty;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.modelchecker.interfaces.ReactionBias;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * 
+ * Approximate Model Checker using importance sampling. The model to execute
+ * has biased rates, which make the event of interest more frequent, and every
+ * run is weighted with the likelihood ratio of its trajectory with respect to
+ * the original model (see {@link WeightedProperty}). The estimate is the mean
+ * of the weighted results, which is unbiased for the original model. Runs are
+ * observed up to the final time they are executed with.
+ * 
+ * The experiment stops when the Student-t interval of the weighted results is
+ * smaller than delta, computed with the effective sample size as degrees of
+ * freedom, and the effective sample size is at least the minimum sample size.
+ * This keeps the experiment going when a few runs with large weights dominate
+ * the estimate.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ * @param <D>
+ *            Property result type
+ */
+public class AlchemistASMCImportanceSampling<T, D> extends AlchemistASMC<T, Weighted<D>, Double> {
+
+	private final WeightedAggregator<D> weighted;
+	private final WeightedProperty<T, ?, D> wp;
+
+	/**
+	 * Construct an instance with given parameters.
+	 * 
+	 * @param delta
+	 *            approximation
+	 * @param alpha
+	 *            confidence
+	 * @param p
+	 *            property to verify
+	 * @param bias
+	 *            the relation between the model to execute and the original
+	 *            one
+	 * @param pa
+	 *            property aggregator to use
+	 */
+	public AlchemistASMCImportanceSampling(final double delta, final double alpha, final Property<T, ?, D> p, final ReactionBias<T> bias, final WeightedAggregator<D> pa) {
+		this(delta, alpha, new WeightedProperty<>(p, bias), pa);
+	}
+
+	/**
+	 * Construct an instance with given parameters.
+	 * 
+	 * @param delta
+	 *            approximation
+	 * @param alpha
+	 *            confidence
+	 * @param p
+	 *            property to verify
+	 * @param bias
+	 *            the relation between the model to execute and the original
+	 *            one
+	 * @param pa
+	 *            property aggregator to use
+	 * @param min
+	 *            minimum effective sample size
+	 */
+	public AlchemistASMCImportanceSampling(final double delta, final double alpha, final Property<T, ?, D> p, final ReactionBias<T> bias, final WeightedAggregator<D> pa, final int min) {
+		this(delta, alpha, new WeightedProperty<>(p, bias), pa, min);
+	}
+
+	private AlchemistASMCImportanceSampling(final double delta, final double alpha, final WeightedProperty<T, ?, D> p, final WeightedAggregator<D> pa) {
+		super(delta, alpha, p, pa);
+		wp = p;
+		weighted = pa;
+	}
+
+	private AlchemistASMCImportanceSampling(final double delta, final double alpha, final WeightedProperty<T, ?, D> p, final WeightedAggregator<D> pa, final int min) {
+		super(delta, alpha, p, pa, min);
+		wp = p;
+		weighted = pa;
+	}
+
+	/*
+	 * The weights depend on the horizon the runs are observed up to.
+	 */
+	@Override
+	protected void prepare(final long steps, final double finalTime) {
+		wp.setHorizon(finalTime);
+	}
+
+	/**
+	 * @return the effective sample size of the runs completed so far
+	 */
+	public double getEffectiveSampleSize() {
+		return weighted.getEffectiveSampleSize();
+	}
+
+	@Override
+	protected boolean stopCondition() {
+		final double ess = weighted.getEffectiveSampleSize();
+		return ess >= Math.max(2, getMinN()) && widthFactor(ess) * weighted.getS() < getDelta();
+	}
+
+	@Override
+	protected double estimateRemainingSamples() {
+		final int n = getN();
+		final double ess = weighted.getEffectiveSampleSize();
+		if (n < 2 || ess < 2) {
+			return Math.max(2, getMinN()) - n;
+		}
+		final double byWidth = Math.pow(widthFactor(ess) * weighted.getS() / getDelta(), 2) * n - n;
+		final double byEss = n * Math.max(2, getMinN()) / ess - n;
+		return Math.ceil(Math.max(byWidth, byEss));
+	}
+
+	@Override
+	protected double computeHalfWidth() {
+		final double ess = weighted.getEffectiveSampleSize();
+		return ess < 2 ? Double.POSITIVE_INFINITY : widthFactor(ess) * weighted.getS() / 2;
+	}
+
+	/*
+	 * Full width of the interval divided by the standard deviation.
+	 */
+	private double widthFactor(final double ess) {
+		return 2 * new TDistribution(ess - 1).inverseCumulativeProbability(1 - getAlpha() / 2) / Math.sqrt(getN());
+	}
+
+	@Override
+	protected void notifyASMCListeners() {
+	}
+
+}
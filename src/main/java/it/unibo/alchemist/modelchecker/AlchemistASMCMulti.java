@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.modelchecker.implementations.ChernoffStopCriterion;
+import it.unibo.alchemist.modelchecker.implementations.MultiPropertyAggregator;
+import it.unibo.alchemist.modelchecker.implementations.MultiPropertyStopCriterion;
+import it.unibo.alchemist.modelchecker.implementations.PropertySet;
+import it.unibo.alchemist.modelchecker.implementations.StudentTStopCriterion;
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregator;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregatorVariance;
+import it.unibo.alchemist.modelchecker.interfaces.StopCriterion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * Approximate Model Checker evaluating many properties on the same
+ * trajectories. Every simulation observes all the properties, and is stopped
+ * early only when none of them can change anymore. Each property has its own
+ * aggregator and stop criterion, and the experiment ends when all the
+ * criteria are satisfied. In order for the confidence to hold for all the
+ * properties simultaneously, default criteria use the Bonferroni corrected
+ * confidence alpha / k, where k is the number of properties.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCMulti<T> extends AlchemistASMC<T, Object[], Object[]> {
+
+	private final PropertySet<T> properties;
+	private final MultiPropertyAggregator aggregators;
+	private final MultiPropertyStopCriterion criteria = new MultiPropertyStopCriterion();
+	private final List<Boolean> custom = new ArrayList<>();
+
+	/**
+	 * Construct an instance with given parameters. Properties must be added
+	 * before calling execute.
+	 * 
+	 * @param delta
+	 *            approximation
+	 * @param alpha
+	 *            confidence, for all the properties together
+	 */
+	public AlchemistASMCMulti(final double delta, final double alpha) {
+		this(delta, alpha, new PropertySet<T>(), new MultiPropertyAggregator());
+	}
+
+	private AlchemistASMCMulti(final double delta, final double alpha, final PropertySet<T> ps, final MultiPropertyAggregator pa) {
+		super(delta, alpha, ps, pa);
+		properties = ps;
+		aggregators = pa;
+		setStopCriterion(criteria);
+	}
+
+	/**
+	 * Adds a property, whose stop criterion will be the Student-t interval if
+	 * the aggregator provides the variance, and the Chernoff-Hoeffding bound
+	 * otherwise, both with the corrected confidence.
+	 * 
+	 * @param p
+	 *            property to verify
+	 * @param pa
+	 *            property aggregator to use
+	 * @param <D>
+	 *            Property result type
+	 * @return the index of the property
+	 */
+	public <D> int addProperty(final Property<T, ?, D> p, final IncrementalPropertyAggregator<?, D> pa) {
+		return addProperty(p, pa, null);
+	}
+
+	/**
+	 * Adds a property with a custom stop criterion. In order for the
+	 * confidence to hold simultaneously, the criterion should be built with
+	 * the confidence returned by {@link #getCorrectedAlpha()} once all the
+	 * properties have been added.
+	 * 
+	 * @param p
+	 *            property to verify
+	 * @param pa
+	 *            property aggregator to use
+	 * @param c
+	 *            stop criterion for this property, or null for the default
+	 * @param <D>
+	 *            Property result type
+	 * @return the index of the property
+	 */
+	public <D> int addProperty(final Property<T, ?, D> p, final IncrementalPropertyAggregator<?, D> pa, final StopCriterion<? super D> c) {
+		aggregators.addAggregator(pa);
+		criteria.addCriterion(c);
+		custom.add(c != null);
+		return properties.addProperty(p);
+	}
+
+	/**
+	 * @return the confidence each property is checked with
+	 */
+	public double getCorrectedAlpha() {
+		return getAlpha() / Math.max(1, properties.size());
+	}
+
+	/*
+	 * Installs the default criteria for every execute and resume method.
+	 */
+	@Override
+	protected void prepare(final long steps, final double finalTime) {
+		if (properties.size() == 0) {
+			throw new IllegalStateException("No property to verify.");
+		}
+		for (int i = 0; i < properties.size(); i++) {
+			if (!custom.get(i)) {
+				criteria.setCriterion(i, aggregators.getAggregator(i) instanceof PropertyAggregatorVariance
+						? new StudentTStopCriterion<>(getDelta(), getCorrectedAlpha(), getMinN())
+						: new ChernoffStopCriterion<>(getDelta(), getCorrectedAlpha()));
+			}
+		}
+	}
+
+	/**
+	 * Waits for all the simulations to finish and returns the aggregated
+	 * result of a single property.
+	 * 
+	 * @param i
+	 *            the index of the property
+	 * @return the final aggregated result of the property
+	 */
+	public Object getResult(final int i) {
+		return getResult()[i];
+	}
+
+	@Override
+	protected boolean stopCondition() {
+		return criteria.isSatisfied();
+	}
+
+	@Override
+	protected void notifyASMCListeners() {
+	}
+
+}
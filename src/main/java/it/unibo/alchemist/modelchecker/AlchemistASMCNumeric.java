@@ -8,8 +8,12 @@
  */
 package it.unibo.alchemist.modelchecker;
 
+import it.unibo.alchemist.modelchecker.implementations.NumericResultCodec;
+import it.unibo.alchemist.modelchecker.implementations.NumericResultStore;
 import it.unibo.alchemist.modelchecker.interfaces.Property;
 import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregatorVariance;
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+import it.unibo.alchemist.modelchecker.interfaces.ResultStore;
 
 /**
  * 
@@ -66,6 +70,16 @@ public class AlchemistASMCNumeric<T, D extends Number> extends AlchemistASMC<T,
 		return intervalSizeReached();
 	}
 
+	@Override
+	protected ResultCodec<D> createResultCodec() {
+		return new NumericResultCodec<>();
+	}
+
+	@Override
+	protected ResultStore<D> createResultStore() {
+		return new NumericResultStore<>();
+	}
+
 	@Override
 	protected void notifyASMCListeners() {
 		// TODO should be implemented
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.modelchecker.implementations.ConfidenceSequenceStopCriterion;
+import it.unibo.alchemist.modelchecker.implementations.ModelCache;
+import it.unibo.alchemist.modelchecker.implementations.RunningStatistics;
+import it.unibo.alchemist.modelchecker.implementations.SeedSequence;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+/**
+ * 
+ * Paired comparison of two variants of a model with common random numbers.
+ * Run i of both variants is seeded with the same seed, derived from the seed
+ * of the first model and from i, so that the two runs share as much
+ * randomness as the models allow. The property is evaluated on both runs
+ * (booleans are mapped to 1 and 0), and the experiment estimates the mean of
+ * the per-run difference B - A with a paired Student-t interval. Positive
+ * correlation between the paired runs makes the interval much smaller than
+ * the one obtainable comparing two independent experiments.
+ * 
+ * The experiment stops, after the minimum number of pairs, when the interval
+ * is smaller than delta, or when the maximum number of pairs is reached.
+ * Stopping as soon as the Student-t interval excludes 0 would inflate the
+ * error, since the interval is checked after every pair: when the range of
+ * the results is known (see {@link #setResultRange(double, double)}), the
+ * sign is instead decided early on an anytime-valid confidence sequence of
+ * the differences (see {@link ConfidenceSequenceStopCriterion}), which is
+ * allowed to be checked after every pair.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCPaired<T> extends AbstractASMCCampaign<T> {
+
+	private static final int A = 0;
+	private static final int B = 1;
+	private final List<Property<T, ?, ?>> properties = new ArrayList<>(2);
+	private final double d;
+	private final double a;
+	private final int minN;
+	private final int maxN;
+	private final RunningStatistics diffs = new RunningStatistics();
+	private volatile boolean decided;
+	private double lowest = Double.NaN;
+	private double highest = Double.NaN;
+	private ConfidenceSequenceStopCriterion<Double> sequence;
+
+	/**
+	 * Construct an instance with given parameters, evaluating the same
+	 * property on both variants.
+	 * 
+	 * @param delta
+	 *            approximation of the difference
+	 * @param alpha
+	 *            confidence
+	 * @param p
+	 *            property to compare, numeric or boolean
+	 * @param min
+	 *            minimum number of pairs
+	 * @param max
+	 *            maximum number of pairs
+	 */
+	public AlchemistASMCPaired(final double delta, final double alpha, final Property<T, ?, ?> p, final int min, final int max) {
+		this(delta, alpha, p, p, min, max);
+	}
+
+	/**
+	 * Construct an instance with given parameters.
+	 * 
+	 * @param delta
+	 *            approximation of the difference
+	 * @param alpha
+	 *            confidence
+	 * @param pa
+	 *            property to evaluate on variant A, numeric or boolean
+	 * @param pb
+	 *            property to evaluate on variant B, numeric or boolean
+	 * @param min
+	 *            minimum number of pairs
+	 * @param max
+	 *            maximum number of pairs
+	 */
+	public AlchemistASMCPaired(final double delta, final double alpha, final Property<T, ?, ?> pa, final Property<T, ?, ?> pb, final int min, final int max) {
+		if (min < 2 || max < min) {
+			throw new IllegalArgumentException("At least two pairs are required, and max can not be less than min.");
+		}
+		properties.add(pa);
+		properties.add(pb);
+		d = delta;
+		a = alpha;
+		minN = min;
+		maxN = max;
+	}
+
+	/**
+	 * Declares the range the property takes its values in, on both variants,
+	 * enabling early sign decisions. Booleans range in [0, 1]. Must be set
+	 * before calling execute.
+	 * 
+	 * @param lower
+	 *            minimum value of the property
+	 * @param upper
+	 *            maximum value of the property
+	 */
+	public void setResultRange(final double lower, final double upper) {
+		if (!(upper > lower)) {
+			throw new IllegalArgumentException("Empty range [" + lower + ", " + upper + "]");
+		}
+		lowest = lower;
+		highest = upper;
+	}
+
+	/**
+	 * Runs the experiment.
+	 * 
+	 * @param xmlA
+	 *            Alchemist XML specification of variant A
+	 * @param xmlB
+	 *            Alchemist XML specification of variant B
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 */
+	public void execute(final String xmlA, final String xmlB, final long steps, final double finalTime) {
+		launch(new Experiment() {
+			@Override
+			public void run() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+				runExperiment(xmlA, xmlB, steps, finalTime);
+			}
+		});
+	}
+
+	@Override
+	protected void configure(final ISimulation<T> s, final Job job) {
+		collect(s, job, properties.get(job.getGroup()));
+	}
+
+	@Override
+	protected boolean isObsolete(final Job job) {
+		return decided;
+	}
+
+	private void runExperiment(final String xmlA, final String xmlB, final long steps, final double finalTime)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+		decided = false;
+		synchronized (diffs) {
+			diffs.reset();
+			final double span = highest - lowest;
+			sequence = Double.isNaN(span) ? null : new ConfidenceSequenceStopCriterion<Double>(d / 2, a, -span, span);
+		}
+		final ModelCache.Model modelA = parse(xmlA);
+		final byte[][] envs = { modelA.getEnvironment(), parse(xmlB).getEnvironment() };
+		final SeedSequence seeds = new SeedSequence(modelA.getSeed());
+		final Map<Integer, Double> halves = new HashMap<>();
+		final SortedMap<Integer, Double> early = new TreeMap<>();
+		int nextRun = 0;
+		int nextPair = 0;
+		int inFlight = 0;
+		boolean stop = false;
+		while (!stop) {
+			for (; 2 * inFlight < getQueueDepth() && nextRun < maxN; nextRun++) {
+				for (int model = A; model <= B; model++) {
+					submit(new Job(model, nextRun), envs[model], seeds.getEngine(nextRun), steps, finalTime);
+				}
+				inFlight++;
+			}
+			final Job arrival = takeArrival();
+			final Double other = halves.remove(arrival.getIndex());
+			if (other == null) {
+				halves.put(arrival.getIndex(), arrival.getValue());
+			} else {
+				early.put(arrival.getIndex(), arrival.getGroup() == B ? arrival.getValue() - other : other - arrival.getValue());
+			}
+			while (!stop && early.containsKey(nextPair)) {
+				synchronized (diffs) {
+					final double diff = early.remove(nextPair);
+					diffs.add(diff);
+					if (sequence != null) {
+						sequence.update(diff);
+					}
+				}
+				inFlight--;
+				nextPair++;
+				stop = nextPair >= maxN || nextPair >= minN && isDecided() || signDecided() != 0;
+			}
+		}
+		decided = true;
+		awaitRuns();
+	}
+
+	private boolean isDecided() {
+		final double[] ci = interval();
+		return ci[1] - ci[0] < d;
+	}
+
+	/*
+	 * The sign of the difference according to the confidence sequence, 0 if
+	 * undecided or if there is no sequence.
+	 */
+	private int signDecided() {
+		synchronized (diffs) {
+			if (sequence == null) {
+				return 0;
+			}
+			final double[] cs = sequence.getInterval();
+			if (cs[0] > 0) {
+				return 1;
+			}
+			return cs[1] < 0 ? -1 : 0;
+		}
+	}
+
+	private double[] interval() {
+		synchronized (diffs) {
+			final int n = diffs.getCount();
+			if (n < 2) {
+				return new double[] { Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
+			}
+			final double hw = AlchemistASMC.computeDeltaDynamic(diffs.getStandardDeviation(), n, a) / 2;
+			return new double[] { diffs.getMean() - hw, diffs.getMean() + hw };
+		}
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the estimated mean
+	 * difference B - A.
+	 * 
+	 * @return the mean difference
+	 */
+	public double getResult() {
+		waitForCompletion();
+		synchronized (diffs) {
+			return diffs.getMean();
+		}
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the confidence interval
+	 * of the mean difference B - A.
+	 * 
+	 * @return lower and upper bound of the interval
+	 */
+	public double[] getConfidenceInterval() {
+		waitForCompletion();
+		return interval();
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns which variant is better,
+	 * according to the confidence sequence if it decided the sign, or to the
+	 * final Student-t interval otherwise.
+	 * 
+	 * @return 1 if the property is significantly larger on B, -1 if it is
+	 *         significantly larger on A, 0 if the sign of the difference is
+	 *         not decided
+	 */
+	public int getOutcome() {
+		final double[] ci = getConfidenceInterval();
+		final int sign = signDecided();
+		if (sign != 0) {
+			return sign;
+		}
+		if (ci[0] > 0) {
+			return 1;
+		}
+		return ci[1] < 0 ? -1 : 0;
+	}
+
+	/**
+	 * @return the number of pairs completed so far
+	 */
+	public int getN() {
+		synchronized (diffs) {
+			return diffs.getCount();
+		}
+	}
+
+}
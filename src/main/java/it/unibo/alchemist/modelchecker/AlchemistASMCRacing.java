@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.modelchecker.implementations.ModelCache;
+import it.unibo.alchemist.modelchecker.implementations.RunningStatistics;
+import it.unibo.alchemist.modelchecker.implementations.SeedSequence;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * Selects the configuration of a model with the largest (or smallest) mean of
+ * a property, using the fully sequential procedure of Kim and Nelson (KN).
+ * All the configurations are sampled in rounds, run r of every configuration
+ * being seeded with the same seed (common random numbers), on a single
+ * executor. After a first stage of n0 rounds, the variances of the pairwise
+ * differences are estimated, and after every further round the
+ * configurations whose mean is dominated by another one beyond a shrinking
+ * tolerance are eliminated, and their runs in flight are stopped. The race is
+ * over when a single configuration survives, or when the tolerance drops to
+ * zero for every pair, in which case the best surviving mean is selected.
+ *
+ * If the best configuration is better than all the others by at least delta
+ * (the indifference zone), it is selected with probability at least 1 -
+ * alpha, assuming normally distributed results.
+ *
+ * Whole rounds are queued, up to the queue depth; the rounds of the first
+ * stage are all queued at once.
+ *
+ * @author Danilo Pianini
+ *
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCRacing<T> extends AbstractASMCCampaign<T> {
+
+	private final Property<T, ?, ?> property;
+	private final double d;
+	private final double a;
+	private final int n0;
+	private final boolean maximize;
+	private volatile AtomicIntegerArray dropped = new AtomicIntegerArray(0);
+	private volatile double[] means = new double[0];
+	private volatile int[] samples = new int[0];
+	private volatile int selected = -1;
+
+	/**
+	 * Construct an instance with given parameters.
+	 *
+	 * @param p
+	 *            property to compare, numeric or boolean
+	 * @param delta
+	 *            indifference zone: the smallest difference worth detecting
+	 * @param alpha
+	 *            probability of an incorrect selection
+	 * @param firstStage
+	 *            number of rounds of the first stage, at least 2
+	 * @param largest
+	 *            true to select the largest mean, false to select the
+	 *            smallest
+	 */
+	public AlchemistASMCRacing(final Property<T, ?, ?> p, final double delta, final double alpha, final int firstStage, final boolean largest) {
+		if (firstStage < 2) {
+			throw new IllegalArgumentException("The first stage requires at least two rounds.");
+		}
+		property = p;
+		d = delta;
+		a = alpha;
+		n0 = firstStage;
+		maximize = largest;
+	}
+
+	/**
+	 * Runs the race. The seeds are derived from the seed of the first
+	 * configuration.
+	 *
+	 * @param xmlFilePaths
+	 *            Alchemist XML specifications of the configurations, at
+	 *            least two
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 */
+	public void execute(final List<String> xmlFilePaths, final long steps, final double finalTime) {
+		if (xmlFilePaths.size() < 2) {
+			throw new IllegalArgumentException("At least two configurations are required for a race.");
+		}
+		launch(new Experiment() {
+			@Override
+			public void run() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+				runExperiment(xmlFilePaths, steps, finalTime);
+			}
+		});
+	}
+
+	@Override
+	protected void configure(final ISimulation<T> s, final Job job) {
+		collect(s, job, property);
+	}
+
+	/*
+	 * Runs of eliminated configurations are stopped.
+	 */
+	@Override
+	protected boolean isObsolete(final Job job) {
+		return dropped.get(job.getGroup()) != 0;
+	}
+
+	private void runExperiment(final List<String> xmlFilePaths, final long steps, final double finalTime)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+		final int k = xmlFilePaths.size();
+		final byte[][] envs = new byte[k][];
+		long masterSeed = 0;
+		for (int i = 0; i < k; i++) {
+			final ModelCache.Model model = parse(xmlFilePaths.get(i));
+			envs[i] = model.getEnvironment();
+			if (i == 0) {
+				masterSeed = model.getSeed();
+			}
+		}
+		final SeedSequence seeds = new SeedSequence(masterSeed);
+		final AtomicIntegerArray out = new AtomicIntegerArray(k);
+		dropped = out;
+		final double[] sums = new double[k];
+		final double[][] first = new double[k][n0];
+		final double[][] s2 = new double[k][k];
+		final Map<Integer, double[]> rounds = new HashMap<>();
+		final Map<Integer, Integer> missing = new HashMap<>();
+		final Map<Integer, Integer> sizes = new HashMap<>();
+		double h2 = 0;
+		int last = 0;
+		int alive = k;
+		int nextRound = 0;
+		int done = 0;
+		/*
+		 * Runs of the rounds not processed yet: complete rounds waiting for
+		 * an earlier one count against the queue depth, so they stay bounded.
+		 */
+		int inFlight = 0;
+		int winner = -1;
+		while (winner < 0) {
+			while (nextRound < n0 || inFlight + alive <= getQueueDepth() || inFlight == 0) {
+				missing.put(nextRound, alive);
+				sizes.put(nextRound, alive);
+				rounds.put(nextRound, new double[k]);
+				for (int i = 0; i < k; i++) {
+					if (out.get(i) == 0) {
+						submit(new Job(i, nextRound), envs[i], seeds.getEngine(nextRound), steps, finalTime);
+						inFlight++;
+					}
+				}
+				nextRound++;
+			}
+			final Job arrival = takeArrival();
+			final int round = arrival.getIndex();
+			rounds.get(round)[arrival.getGroup()] = maximize ? arrival.getValue() : -arrival.getValue();
+			missing.put(round, missing.get(round) - 1);
+			while (winner < 0 && missing.containsKey(done) && missing.get(done) == 0) {
+				missing.remove(done);
+				inFlight -= sizes.remove(done);
+				final double[] values = rounds.remove(done);
+				for (int i = 0; i < k; i++) {
+					if (out.get(i) == 0) {
+						sums[i] += values[i];
+						if (done < n0) {
+							first[i][done] = values[i];
+						}
+					}
+				}
+				done++;
+				if (done == n0) {
+					h2 = h2(a, k, n0);
+					for (int i = 0; i < k; i++) {
+						for (int l = i + 1; l < k; l++) {
+							final RunningStatistics diff = new RunningStatistics();
+							for (int r = 0; r < n0; r++) {
+								diff.add(first[i][r] - first[l][r]);
+							}
+							s2[i][l] = diff.getVariance();
+							s2[l][i] = s2[i][l];
+							last = Math.max(last, (int) Math.floor(h2 * s2[i][l] / (d * d)) + 1);
+						}
+					}
+				}
+				if (done >= n0) {
+					alive = eliminate(out, sums, s2, h2, done);
+					if (alive == 1) {
+						winner = survivor(out);
+					} else if (done >= last) {
+						winner = best(out, sums);
+					}
+				}
+			}
+		}
+		selected = winner;
+		final int[] n = new int[k];
+		final double[] m = new double[k];
+		for (int i = 0; i < k; i++) {
+			n[i] = out.get(i) == 0 ? done : out.get(i);
+			m[i] = (maximize ? 1 : -1) * sums[i] / n[i];
+		}
+		samples = n;
+		means = m;
+		for (int i = 0; i < k; i++) {
+			out.compareAndSet(i, 0, done);
+		}
+		awaitRuns();
+	}
+
+	/*
+	 * Eliminates, all at once, the configurations whose mean after r rounds
+	 * is below the mean of another one minus the KN tolerance W. Eliminated
+	 * configurations are marked with the number of rounds they took part in.
+	 * Returns the number of survivors.
+	 */
+	private int eliminate(final AtomicIntegerArray out, final double[] sums, final double[][] s2, final double h2, final int r) {
+		final int k = sums.length;
+		final boolean[] drop = new boolean[k];
+		for (int i = 0; i < k; i++) {
+			for (int l = 0; l < k && out.get(i) == 0 && !drop[i]; l++) {
+				if (l != i && out.get(l) == 0) {
+					drop[i] = sums[i] / r < sums[l] / r - tolerance(d, h2, s2[i][l], r);
+				}
+			}
+		}
+		int alive = 0;
+		for (int i = 0; i < k; i++) {
+			if (drop[i]) {
+				out.set(i, r);
+			} else if (out.get(i) == 0) {
+				alive++;
+			}
+		}
+		return alive;
+	}
+
+	/**
+	 * The constant h^2 = 2 eta (n0 - 1) of KN, where eta solves the
+	 * Bonferroni bound 2 alpha / (k - 1) on the probability that a pair is
+	 * wrongly eliminated: eta = ((2 alpha / (k - 1))^(-2 / (n0 - 1)) - 1) / 2.
+	 *
+	 * @param alpha
+	 *            probability of an incorrect selection
+	 * @param k
+	 *            number of configurations
+	 * @param n0
+	 *            number of rounds of the first stage
+	 * @return h^2
+	 */
+	static double h2(final double alpha, final int k, final int n0) {
+		final double eta = (Math.pow(2 * alpha / (k - 1), -2d / (n0 - 1)) - 1) / 2;
+		return 2 * eta * (n0 - 1);
+	}
+
+	/**
+	 * The KN tolerance W(r) for a pair of configurations: the difference of
+	 * their means after r rounds beyond which the worse one is eliminated.
+	 * It shrinks linearly in 1 / r, and is zero from round h^2 s^2 / delta^2
+	 * on.
+	 *
+	 * @param delta
+	 *            indifference zone
+	 * @param h2
+	 *            the constant h^2
+	 * @param s2
+	 *            the first stage variance of the differences of the pair
+	 * @param r
+	 *            number of rounds
+	 * @return the tolerance
+	 */
+	static double tolerance(final double delta, final double h2, final double s2, final int r) {
+		return Math.max(0, delta / (2 * r) * (h2 * s2 / (delta * delta) - r));
+	}
+
+	/*
+	 * After the last round prescribed by the procedure, the tolerance is zero
+	 * for every pair, and the best mean among the survivors wins.
+	 */
+	private static int best(final AtomicIntegerArray out, final double[] sums) {
+		int res = -1;
+		for (int i = 0; i < sums.length; i++) {
+			if (out.get(i) == 0 && (res < 0 || sums[i] > sums[res])) {
+				res = i;
+			}
+		}
+		return res;
+	}
+
+	private static int survivor(final AtomicIntegerArray out) {
+		for (int i = 0; i < out.length(); i++) {
+			if (out.get(i) == 0) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("No configuration survived.");
+	}
+
+	/**
+	 * Waits for the race to finish and returns the selected configuration.
+	 *
+	 * @return the index of the selected configuration
+	 */
+	public int getSelected() {
+		waitForCompletion();
+		return selected;
+	}
+
+	/**
+	 * Waits for the race to finish and returns the estimated means.
+	 *
+	 * @return the mean of each configuration, estimated on the rounds it
+	 *         took part in
+	 */
+	public double[] getMeans() {
+		waitForCompletion();
+		return means.clone();
+	}
+
+	/**
+	 * Waits for the race to finish and returns how many runs each
+	 * configuration received.
+	 *
+	 * @return the number of rounds each configuration took part in
+	 */
+	public int[] getSampleSizes() {
+		waitForCompletion();
+		return samples.clone();
+	}
+
+}
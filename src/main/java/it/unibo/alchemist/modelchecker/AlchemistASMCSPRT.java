@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.modelchecker.implementations.BooleanResultCodec;
+import it.unibo.alchemist.modelchecker.implementations.BooleanResultStore;
+import it.unibo.alchemist.modelchecker.implementations.EventProbability;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+import it.unibo.alchemist.modelchecker.interfaces.ResultStore;
+
+/**
+ * 
+ * Hypothesis testing Model Checker. Decides whether P(p) &ge; theta using
+ * Wald's Sequential Probability Ratio Test with indifference region
+ * [theta - delta, theta + delta]: H0 is P(p) &ge; theta + delta, H1 is P(p)
+ * &le; theta - delta. The test is evaluated after every single run, and the
+ * probability of accepting H1 when H0 holds is bounded by alpha, while the
+ * probability of accepting H0 when H1 holds is bounded by beta. If no decision
+ * is reached within {@link #getMaxN()} runs, or the run or time budget ends
+ * the experiment first, the test is truncated and the decision is taken by
+ * comparing the estimated probability with theta. The runs still in flight
+ * once the test is decided are always discarded:
+ * {@link AlchemistASMC.LateSamplePolicy#FOLD} is rejected.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCSPRT<T> extends AlchemistASMC<T, Boolean, Double> {
+
+	private final EventProbability counter;
+	private final double theta;
+	private final double b;
+	private final double logAcceptH0;
+	private final double logAcceptH1;
+	private final double logSuccess;
+	private final double logFailure;
+
+	/**
+	 * Construct an instance with given parameters.
+	 * 
+	 * @param threshold
+	 *            the probability threshold theta
+	 * @param delta
+	 *            half width of the indifference region
+	 * @param alpha
+	 *            probability of a type I error (rejecting P(p) &ge; theta +
+	 *            delta when it holds)
+	 * @param beta
+	 *            probability of a type II error (accepting P(p) &ge; theta +
+	 *            delta when P(p) &le; theta - delta)
+	 * @param p
+	 *            property to verify
+	 */
+	public AlchemistASMCSPRT(final double threshold, final double delta, final double alpha, final double beta, final Property<T, ?, Boolean> p) {
+		this(threshold, delta, alpha, beta, p, new EventProbability());
+	}
+
+	/**
+	 * Construct an instance with given parameters.
+	 * 
+	 * @param threshold
+	 *            the probability threshold theta
+	 * @param delta
+	 *            half width of the indifference region
+	 * @param alpha
+	 *            probability of a type I error (rejecting P(p) &ge; theta +
+	 *            delta when it holds)
+	 * @param beta
+	 *            probability of a type II error (accepting P(p) &ge; theta +
+	 *            delta when P(p) &le; theta - delta)
+	 * @param p
+	 *            property to verify
+	 * @param pa
+	 *            property aggregator to use
+	 */
+	public AlchemistASMCSPRT(final double threshold, final double delta, final double alpha, final double beta, final Property<T, ?, Boolean> p, final EventProbability pa) {
+		super(delta, alpha, p, pa, 1);
+		final double p0 = threshold + delta;
+		final double p1 = threshold - delta;
+		if (p1 <= 0 || p0 >= 1) {
+			throw new IllegalArgumentException("The indifference region [" + p1 + ", " + p0 + "] must be strictly contained in ]0, 1[.");
+		}
+		counter = pa;
+		theta = threshold;
+		b = beta;
+		logAcceptH0 = Math.log(beta / (1 - alpha));
+		logAcceptH1 = Math.log((1 - beta) / alpha);
+		logSuccess = Math.log(p1 / p0);
+		logFailure = Math.log((1 - p1) / (1 - p0));
+	}
+
+	/*
+	 * Folding samples after a boundary is crossed could flip the decision.
+	 */
+	@Override
+	protected boolean acceptsLateSamples() {
+		return false;
+	}
+
+	@Override
+	protected boolean stopCondition() {
+		return decide(false) != null;
+	}
+
+	/*
+	 * The outcome of the test on the runs aggregated so far, or null while
+	 * the log likelihood ratio is within the continuation region and the test
+	 * is not truncated. The outcome is derived from the counts every time, so
+	 * it never outlives the experiment it belongs to.
+	 */
+	Boolean decide(final boolean truncated) {
+		final int n;
+		final int k;
+		synchronized (counter) {
+			n = counter.getCount();
+			k = counter.getSuccesses();
+		}
+		final double llr = k * logSuccess + (n - k) * logFailure;
+		if (llr <= logAcceptH0) {
+			return true;
+		}
+		if (llr >= logAcceptH1) {
+			return false;
+		}
+		if (truncated || n >= getMaxN()) {
+			if (n == 0) {
+				throw new IllegalStateException("No run completed: the test can not be decided.");
+			}
+			return ((double) k) / n >= theta;
+		}
+		return null;
+	}
+
+	/**
+	 * Waits for the test to end and returns its outcome. If the test ended
+	 * before crossing a boundary, the estimated probability is compared with
+	 * theta.
+	 * 
+	 * @return true if P(p) &ge; theta has been accepted, false otherwise
+	 * @throws IllegalStateException
+	 *             if the experiment failed, or ended before any run completed
+	 */
+	public boolean isHypothesisAccepted() {
+		waitForCompletion();
+		return decide(true);
+	}
+
+	/**
+	 * @return the probability threshold theta
+	 */
+	public double getThreshold() {
+		return theta;
+	}
+
+	/**
+	 * @return the probability of accepting P(p) &ge; theta when P(p) &le; theta
+	 *         - delta
+	 */
+	public double getBeta() {
+		return b;
+	}
+
+	@Override
+	protected ResultCodec<Boolean> createResultCodec() {
+		return new BooleanResultCodec();
+	}
+
+	@Override
+	protected ResultStore<Boolean> createResultStore() {
+		return new BooleanResultStore();
+	}
+
+	@Override
+	protected void notifyASMCListeners() {
+	}
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.implementations.Simulation;
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.implementations.ModelCache;
+import it.unibo.alchemist.modelchecker.implementations.SeedSequence;
+import it.unibo.alchemist.modelchecker.interfaces.Observation;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.utils.L;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.xml.sax.SAXException;
+
+/**
+ * 
+ * Estimates the probability of rare events with fixed effort multilevel
+ * splitting. A score function over the environment measures how close a
+ * trajectory is to the event, and increasing levels split the way to the event
+ * in stages which are not rare. At every stage, a fixed number of runs is
+ * simulated, starting from the states the previous stage reached (from the
+ * initial state for the first stage) and stopping as soon as the score
+ * reaches the level of the stage: the states reached are snapshot, and the
+ * fraction of runs reaching the level estimates the conditional probability of
+ * the stage. The runs of the last stage are checked against the property.
+ * The probability of the event is the product of the conditional
+ * probabilities.
+ * 
+ * The score should reach the last level before the property becomes true. The
+ * simulated time of a restored environment goes on from the snapshot, so the
+ * final time bounds whole trajectories, while steps bound each stage.
+ * Snapshots of all the runs reaching a level are kept in memory at once.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCSplitting<T> extends AbstractASMCCampaign<T> {
+
+	private final Property<T, ?, Boolean> property;
+	private final Observation<Double, T> score;
+	private final double[] levels;
+	private final int effort;
+	private final double a;
+	private final AtomicInteger hits = new AtomicInteger();
+	private volatile AtomicReferenceArray<byte[]> reached;
+	private volatile double level;
+	private volatile double[] conditional = new double[0];
+
+	/**
+	 * Construct an instance with given parameters.
+	 * 
+	 * @param p
+	 *            property to verify
+	 * @param s
+	 *            score function: the higher, the closer the event
+	 * @param scoreLevels
+	 *            increasing score levels
+	 * @param runsPerStage
+	 *            number of runs simulated at every stage
+	 * @param alpha
+	 *            confidence of the interval
+	 */
+	public AlchemistASMCSplitting(final Property<T, ?, Boolean> p, final Observation<Double, T> s, final double[] scoreLevels, final int runsPerStage, final double alpha) {
+		if (runsPerStage < 1) {
+			throw new IllegalArgumentException("At least one run per stage is required.");
+		}
+		for (int i = 1; i < scoreLevels.length; i++) {
+			if (scoreLevels[i] <= scoreLevels[i - 1]) {
+				throw new IllegalArgumentException("Levels must be increasing.");
+			}
+		}
+		property = p;
+		score = s;
+		levels = Arrays.copyOf(scoreLevels, scoreLevels.length);
+		effort = runsPerStage;
+		a = alpha;
+	}
+
+	/**
+	 * Runs the experiment. Run i of stage k is seeded with the seed of run
+	 * k * runsPerStage + i of the model, and starts from the state reached by
+	 * the successful run i modulo the number of successful runs of stage k - 1,
+	 * in run order. If no run reaches a level, later stages are not simulated
+	 * and the estimate is 0.
+	 * 
+	 * @param xmlFilePath
+	 *            Alchemist XML specification to execute
+	 * @param steps
+	 *            maximum length of each stage in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 */
+	public void execute(final String xmlFilePath, final long steps, final double finalTime) {
+		launch(new Experiment() {
+			@Override
+			public void run() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+				runExperiment(xmlFilePath, steps, finalTime);
+			}
+		});
+	}
+
+	@Override
+	protected void configure(final ISimulation<T> s, final Job job) {
+		final AtomicReferenceArray<byte[]> target = reached;
+		if (target == null) {
+			final Property<T, ?, Boolean> pclone = property.clone();
+			s.addOutputMonitor(pclone);
+			s.addOutputMonitor(new EventCollector(pclone));
+		} else {
+			s.addOutputMonitor(new LevelMonitor(job.getIndex(), score.clone(), level, target));
+		}
+	}
+
+	private void runExperiment(final String xmlFilePath, final long steps, final double finalTime)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+		final ModelCache.Model model = parse(xmlFilePath);
+		final SeedSequence seeds = new SeedSequence(model.getSeed());
+		final double[] p = new double[levels.length + 1];
+		List<byte[]> starts = Arrays.asList(model.getEnvironment());
+		for (int stage = 0; stage <= levels.length && !starts.isEmpty(); stage++) {
+			final boolean last = stage == levels.length;
+			level = last ? Double.NaN : levels[stage];
+			reached = last ? null : new AtomicReferenceArray<byte[]>(effort);
+			hits.set(0);
+			for (int i = 0; i < effort; i++) {
+				submit(new Job(stage, i), starts.get(i % starts.size()), seeds.getEngine((long) stage * effort + i), steps, finalTime);
+			}
+			awaitRuns();
+			final List<byte[]> next = new ArrayList<>();
+			if (last) {
+				p[stage] = ((double) hits.get()) / effort;
+			} else {
+				for (int i = 0; i < effort; i++) {
+					final byte[] snapshot = reached.get(i);
+					if (snapshot != null) {
+						next.add(snapshot);
+					}
+				}
+				p[stage] = ((double) next.size()) / effort;
+			}
+			starts = next;
+		}
+		reached = null;
+		conditional = p;
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the estimated probability.
+	 * 
+	 * @return the estimated probability of the property
+	 */
+	public double getResult() {
+		waitForCompletion();
+		double res = 1;
+		for (final double p : conditional) {
+			res *= p;
+		}
+		return res;
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the confidence interval
+	 * of the estimate. The relative variance of the product is approximated by
+	 * the sum of the relative variances of the stages. If a stage has no
+	 * successful run, the upper bound is the one of the Clopper-Pearson
+	 * interval for that stage, times the estimate of the previous stages.
+	 * 
+	 * @return lower and upper bound of the interval
+	 */
+	public double[] getConfidenceInterval() {
+		final double est = getResult();
+		final double[] p = conditional;
+		if (est > 0) {
+			double relVar = 0;
+			for (final double pk : p) {
+				relVar += (1 - pk) / (effort * pk);
+			}
+			final double hw = est * new NormalDistribution().inverseCumulativeProbability(1 - a / 2) * Math.sqrt(relVar);
+			return new double[] { Math.max(0, est - hw), Math.min(1, est + hw) };
+		}
+		double upper = 1;
+		for (final double pk : p) {
+			if (pk == 0) {
+				upper *= 1 - Math.pow(a / 2, 1d / effort);
+				break;
+			}
+			upper *= pk;
+		}
+		return new double[] { 0, upper };
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the estimated conditional
+	 * probability of each stage.
+	 * 
+	 * @return the conditional probabilities, the last being the probability
+	 *         of the property given the last level has been reached
+	 */
+	public double[] getConditionalProbabilities() {
+		waitForCompletion();
+		return Arrays.copyOf(conditional, conditional.length);
+	}
+
+	/**
+	 * Snapshots the state of a run as soon as its score reaches the level of
+	 * the stage, and stops the run.
+	 */
+	private final class LevelMonitor implements OutputMonitor<T> {
+
+		private static final long serialVersionUID = -2181357622768958147L;
+		private final int job;
+		private final Observation<Double, T> obs;
+		private final double threshold;
+		private final AtomicReferenceArray<byte[]> target;
+		private boolean done;
+
+		private LevelMonitor(final int index, final Observation<Double, T> o, final double lvl, final AtomicReferenceArray<byte[]> snaps) {
+			job = index;
+			obs = o;
+			threshold = lvl;
+			target = snaps;
+		}
+
+		@Override
+		public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+			check(env);
+		}
+
+		@Override
+		public void initialized(final IEnvironment<T> env) {
+			check(env);
+		}
+
+		@Override
+		public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+		}
+
+		private void check(final IEnvironment<T> env) {
+			if (!done && obs.observe(env) >= threshold) {
+				done = true;
+				try {
+					target.set(job, AlchemistASMC.snapshot(env));
+				} catch (IOException e) {
+					L.error(e);
+				}
+				Simulation.stop(env);
+			}
+		}
+	}
+
+	/**
+	 * Counts the runs of the last stage satisfying the property.
+	 */
+	private final class EventCollector implements OutputMonitor<T> {
+
+		private static final long serialVersionUID = 5730945261693377541L;
+		private final Property<T, ?, Boolean> prop;
+
+		private EventCollector(final Property<T, ?, Boolean> p) {
+			prop = p;
+		}
+
+		@Override
+		public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+		}
+
+		@Override
+		public void initialized(final IEnvironment<T> env) {
+		}
+
+		@Override
+		public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+			if (prop.getResult()) {
+				hits.incrementAndGet();
+			}
+		}
+	}
+
+}
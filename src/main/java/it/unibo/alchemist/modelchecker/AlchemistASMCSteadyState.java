@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.boundary.interfaces.OutputMonitor;
+import it.unibo.alchemist.core.implementations.Simulation;
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.implementations.ModelCache;
+import it.unibo.alchemist.modelchecker.implementations.RunningStatistics;
+import it.unibo.alchemist.modelchecker.implementations.SeedSequence;
+import it.unibo.alchemist.modelchecker.interfaces.Observation;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+/**
+ * 
+ * Steady state Model Checker. Estimates the long run time average of an
+ * observation, either boolean (the fraction of time it holds) or numeric,
+ * from one or a few long trajectories instead of many independent runs.
+ * 
+ * Each trajectory is cut in basic batches of fixed simulated duration, and
+ * the time average of the observation in each batch is recorded. The initial
+ * transient is detected and dropped with the MSER-5 rule, and the remaining
+ * basic batches are grouped in a fixed number of large batches, whose means
+ * are assumed to be independent. The trajectories are stopped as soon as the
+ * Student-t interval of the large batch means is smaller than delta. The
+ * analysis is repeated every time the number of basic batches grows by a
+ * tenth, and costs linear time in the number of groups of five basic
+ * batches, thanks to prefix sums kept as the batches are closed: the total
+ * cost is linear in the number of batches, at the price of simulating up to
+ * a tenth more batches than strictly needed.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCSteadyState<T> extends AbstractASMCCampaign<T> {
+
+	/**
+	 * Default number of large batches per trajectory.
+	 */
+	public static final int DEFAULT_BATCHES = 30;
+	private static final int MSER_GROUP = 5;
+	private static final double GROWTH = 1.1;
+	private final Observation<?, T> observation;
+	private final double d;
+	private final double a;
+	private final double batchLength;
+	private final int replications;
+	private final int batches;
+	private final List<Series> basic = new ArrayList<>();
+	private final double[] transients;
+	private volatile boolean done;
+	private int closed;
+	private int nextAnalysis;
+	private double mean = Double.NaN;
+	private double width = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Construct an instance with given parameters, using a single trajectory
+	 * and {@link #DEFAULT_BATCHES} large batches.
+	 * 
+	 * @param obs
+	 *            the observation to average, either boolean or numeric
+	 * @param delta
+	 *            approximation
+	 * @param alpha
+	 *            confidence
+	 * @param batchTime
+	 *            simulated duration of a basic batch
+	 */
+	public AlchemistASMCSteadyState(final Observation<?, T> obs, final double delta, final double alpha, final double batchTime) {
+		this(obs, delta, alpha, batchTime, 1, DEFAULT_BATCHES);
+	}
+
+	/**
+	 * Construct an instance with given parameters.
+	 * 
+	 * @param obs
+	 *            the observation to average, either boolean or numeric
+	 * @param delta
+	 *            approximation
+	 * @param alpha
+	 *            confidence
+	 * @param batchTime
+	 *            simulated duration of a basic batch
+	 * @param trajectories
+	 *            number of independent trajectories to simulate in parallel
+	 * @param largeBatches
+	 *            number of large batches per trajectory
+	 */
+	public AlchemistASMCSteadyState(final Observation<?, T> obs, final double delta, final double alpha, final double batchTime, final int trajectories, final int largeBatches) {
+		if (batchTime <= 0 || trajectories < 1 || largeBatches < 2) {
+			throw new IllegalArgumentException("Batches must last, and at least a trajectory and two large batches are required.");
+		}
+		observation = obs;
+		d = delta;
+		a = alpha;
+		batchLength = batchTime;
+		replications = trajectories;
+		batches = largeBatches;
+		transients = new double[trajectories];
+	}
+
+	/**
+	 * Runs the experiment. Trajectory i is seeded with the seed of run i of
+	 * the model. Trajectories are stopped when the required precision is
+	 * reached, or when they reach the given limits: in the latter case, the
+	 * result is computed on the batches available.
+	 * 
+	 * @param xmlFilePath
+	 *            Alchemist XML specification to execute
+	 * @param steps
+	 *            maximum length of each trajectory in steps
+	 * @param finalTime
+	 *            maximum length of each trajectory in simulated time units
+	 */
+	public void execute(final String xmlFilePath, final long steps, final double finalTime) {
+		launch(new Experiment() {
+			@Override
+			public void run() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+				runExperiment(xmlFilePath, steps, finalTime);
+			}
+		});
+	}
+
+	@Override
+	protected void configure(final ISimulation<T> s, final Job job) {
+		s.addOutputMonitor(new BatchMonitor(job.getIndex(), observation.clone()));
+	}
+
+	private void runExperiment(final String xmlFilePath, final long steps, final double finalTime)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+		synchronized (this) {
+			done = false;
+			basic.clear();
+			for (int i = 0; i < replications; i++) {
+				basic.add(new Series());
+			}
+			closed = 0;
+			nextAnalysis = replications * batches;
+			mean = Double.NaN;
+			width = Double.POSITIVE_INFINITY;
+		}
+		final ModelCache.Model model = parse(xmlFilePath);
+		final SeedSequence seeds = new SeedSequence(model.getSeed());
+		for (int i = 0; i < replications; i++) {
+			submit(new Job(0, i), model.getEnvironment(), seeds.getEngine(i), steps, finalTime);
+		}
+		awaitRuns();
+		synchronized (this) {
+			analyze();
+		}
+	}
+
+	private synchronized void batchDone(final int trajectory, final double value) {
+		basic.get(trajectory).add(value);
+		closed++;
+		if (!done && closed >= nextAnalysis) {
+			analyze();
+			done = width < d;
+			nextAnalysis = Math.max(closed + 1, (int) Math.ceil(closed * GROWTH));
+		}
+	}
+
+	private void analyze() {
+		final RunningStatistics large = new RunningStatistics();
+		for (int i = 0; i < replications; i++) {
+			final Series y = basic.get(i);
+			final int start = y.mser();
+			transients[i] = start * batchLength;
+			final int size = (y.size() - start) / batches;
+			if (size == 0) {
+				width = Double.POSITIVE_INFINITY;
+				return;
+			}
+			for (int b = 0; b < batches; b++) {
+				large.add(y.sum(start + b * size, start + (b + 1) * size) / size);
+			}
+		}
+		mean = large.getMean();
+		final int n = large.getCount();
+		width = AlchemistASMC.computeDeltaDynamic(large.getStandardDeviation(), n, a);
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the estimated long run
+	 * time average.
+	 * 
+	 * @return the estimated time average of the observation
+	 */
+	public double getResult() {
+		waitForCompletion();
+		synchronized (this) {
+			return mean;
+		}
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the width of the
+	 * confidence interval.
+	 * 
+	 * @return the width of the interval, infinite if the trajectories were
+	 *         too short to fill the large batches
+	 */
+	public double getIntervalWidth() {
+		waitForCompletion();
+		synchronized (this) {
+			return width;
+		}
+	}
+
+	/**
+	 * Waits for the experiment to finish and returns the simulated time
+	 * dropped as transient in each trajectory.
+	 * 
+	 * @return the length of the transients
+	 */
+	public double[] getTransientLengths() {
+		waitForCompletion();
+		synchronized (this) {
+			return transients.clone();
+		}
+	}
+
+	/**
+	 * The basic batch means of a trajectory, with the prefix sums of the
+	 * means, and of the means and squared means of the groups of five.
+	 */
+	private static final class Series {
+
+		private static final int INITIAL_CAPACITY = 64;
+		private double[] sums = new double[INITIAL_CAPACITY];
+		private double[] groupSums = new double[INITIAL_CAPACITY / MSER_GROUP];
+		private double[] groupSquares = new double[INITIAL_CAPACITY / MSER_GROUP];
+		private int size;
+		private int groups;
+
+		private void add(final double value) {
+			if (size + 1 == sums.length) {
+				sums = Arrays.copyOf(sums, sums.length * 2);
+			}
+			sums[size + 1] = sums[size] + value;
+			size++;
+			if (size % MSER_GROUP == 0) {
+				if (groups + 1 == groupSums.length) {
+					groupSums = Arrays.copyOf(groupSums, groupSums.length * 2);
+					groupSquares = Arrays.copyOf(groupSquares, groupSquares.length * 2);
+				}
+				final double z = sum(size - MSER_GROUP, size) / MSER_GROUP;
+				groupSums[groups + 1] = groupSums[groups] + z;
+				groupSquares[groups + 1] = groupSquares[groups] + z * z;
+				groups++;
+			}
+		}
+
+		private int size() {
+			return size;
+		}
+
+		/*
+		 * Sum of the basic batch means in [from, to).
+		 */
+		private double sum(final int from, final int to) {
+			return sums[to] - sums[from];
+		}
+
+		/*
+		 * MSER-5: the truncation point, in basic batches, minimizing the
+		 * squared standard error of the mean of the remaining groups of five.
+		 * Only the first half of the data is considered for truncation.
+		 */
+		private int mser() {
+			if (groups < 2) {
+				return 0;
+			}
+			int best = 0;
+			double bestValue = Double.POSITIVE_INFINITY;
+			for (int j = 0; j <= groups / 2; j++) {
+				final int m = groups - j;
+				final double sum = groupSums[groups] - groupSums[j];
+				final double sumSq = groupSquares[groups] - groupSquares[j];
+				final double value = (sumSq - sum * sum / m) / ((double) m * m);
+				if (value < bestValue) {
+					bestValue = value;
+					best = j;
+				}
+			}
+			return best * MSER_GROUP;
+		}
+	}
+
+	/**
+	 * Integrates the observation over time, and closes a basic batch every
+	 * time the batch length elapses.
+	 */
+	private final class BatchMonitor implements OutputMonitor<T> {
+
+		private static final long serialVersionUID = 4185432680566016447L;
+		private final int trajectory;
+		private final Observation<?, T> obs;
+		private double value;
+		private double lastTime;
+		private double batchEnd = batchLength;
+		private double integral;
+
+		private BatchMonitor(final int index, final Observation<?, T> o) {
+			trajectory = index;
+			obs = o;
+		}
+
+		@Override
+		public void initialized(final IEnvironment<T> env) {
+			value = observe(env);
+		}
+
+		@Override
+		public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+			final double now = time.toDouble();
+			if (Double.isInfinite(now)) {
+				/*
+				 * No event will ever happen again: the trajectory ends with
+				 * the last batch it closed.
+				 */
+				Simulation.stop(env);
+				return;
+			}
+			while (now >= batchEnd) {
+				integral += value * (batchEnd - lastTime);
+				batchDone(trajectory, integral / batchLength);
+				integral = 0;
+				lastTime = batchEnd;
+				batchEnd += batchLength;
+			}
+			integral += value * (now - lastTime);
+			lastTime = now;
+			value = observe(env);
+			if (done) {
+				Simulation.stop(env);
+			}
+		}
+
+		@Override
+		public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+		}
+
+		private double observe(final IEnvironment<T> env) {
+			return toDouble(obs.observe(env));
+		}
+	}
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import it.unibo.alchemist.core.interfaces.ISimulation;
+import it.unibo.alchemist.modelchecker.implementations.ModelCache;
+import it.unibo.alchemist.modelchecker.implementations.RunningStatistics;
+import it.unibo.alchemist.modelchecker.implementations.SeedSequence;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.utils.L;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * Sweeps a model over a grid of parameters. The model is an XML template in
+ * which every occurrence of ${name} is replaced by the value of the parameter
+ * name, and the grid is the cartesian product of the values of the
+ * parameters. The mean of the property (booleans are mapped to 1 and 0) is
+ * estimated at every point of the grid.
+ *
+ * The runs of all the points share a single executor: free slots go to the
+ * points which are still converging and have the fewest runs, so that the
+ * points converging early leave the machine to the others. Each point stops,
+ * after the minimum number of runs, as soon as its Student-t interval is
+ * smaller than delta, or when it reaches the maximum number of runs.
+ *
+ * @author Danilo Pianini
+ *
+ * @param <T>
+ *            Concentration type
+ */
+public class AlchemistASMCSweep<T> extends AbstractASMCCampaign<T> {
+
+	/**
+	 * Column of the estimated mean in the result matrix.
+	 */
+	public static final int MEAN = 0;
+	/**
+	 * Column of the lower bound of the interval in the result matrix.
+	 */
+	public static final int LOWER = 1;
+	/**
+	 * Column of the upper bound of the interval in the result matrix.
+	 */
+	public static final int UPPER = 2;
+	/**
+	 * Column of the number of runs in the result matrix.
+	 */
+	public static final int RUNS = 3;
+	private static final int COLUMNS = 4;
+	/*
+	 * The grid points are instantiated in temporary files which are never
+	 * parsed twice: caching them would only evict the models worth keeping.
+	 */
+	private static final ModelCache POINTS = new ModelCache(0);
+	private final Property<T, ?, ?> property;
+	private final double d;
+	private final double a;
+	private final int minN;
+	private final int maxN;
+	private volatile AtomicIntegerArray converged = new AtomicIntegerArray(0);
+	private volatile List<Map<String, String>> points = Collections.emptyList();
+	private volatile double[][] results = new double[0][];
+
+	/**
+	 * Construct an instance with given parameters.
+	 *
+	 * @param delta
+	 *            approximation, for every point
+	 * @param alpha
+	 *            confidence, for every point
+	 * @param p
+	 *            property to estimate, numeric or boolean
+	 * @param min
+	 *            minimum number of runs per point
+	 * @param max
+	 *            maximum number of runs per point
+	 */
+	public AlchemistASMCSweep(final double delta, final double alpha, final Property<T, ?, ?> p, final int min, final int max) {
+		if (min < 2 || max < min) {
+			throw new IllegalArgumentException("At least two runs are required, and max can not be less than min.");
+		}
+		property = p;
+		d = delta;
+		a = alpha;
+		minN = min;
+		maxN = max;
+	}
+
+	/**
+	 * Runs the sweep. The points are enumerated in the order of
+	 * {@link #getPoints()}. The instances of the template are written in a
+	 * temporary directory, deleted at the end of the sweep, so the template
+	 * should not refer to other files by relative paths. Run i of every point
+	 * is seeded with the seed of run i of the instance of that point.
+	 *
+	 * @param xmlTemplatePath
+	 *            Alchemist XML template
+	 * @param parameters
+	 *            the values of each parameter
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 */
+	public void execute(final String xmlTemplatePath, final Map<String, ? extends List<?>> parameters, final long steps, final double finalTime) {
+		final List<Map<String, String>> grid = grid(parameters);
+		launch(new Experiment() {
+			@Override
+			public void run() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+				runExperiment(xmlTemplatePath, grid, steps, finalTime);
+			}
+		});
+	}
+
+	@Override
+	protected void configure(final ISimulation<T> s, final Job job) {
+		collect(s, job, property);
+	}
+
+	/*
+	 * Runs of converged points are stopped.
+	 */
+	@Override
+	protected boolean isObsolete(final Job job) {
+		return converged.get(job.getGroup()) != 0;
+	}
+
+	/*
+	 * Cartesian product of the parameter values, the last parameter varying
+	 * fastest.
+	 */
+	static List<Map<String, String>> grid(final Map<String, ? extends List<?>> parameters) {
+		List<Map<String, String>> res = new ArrayList<>();
+		res.add(new LinkedHashMap<String, String>());
+		for (final Entry<String, ? extends List<?>> param : parameters.entrySet()) {
+			final List<Map<String, String>> next = new ArrayList<>(res.size() * param.getValue().size());
+			for (final Map<String, String> point : res) {
+				for (final Object value : param.getValue()) {
+					final Map<String, String> p = new LinkedHashMap<>(point);
+					p.put(param.getKey(), String.valueOf(value));
+					next.add(p);
+				}
+			}
+			res = next;
+		}
+		return res;
+	}
+
+	private void runExperiment(final String xmlTemplatePath, final List<Map<String, String>> grid, final long steps, final double finalTime)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException, InterruptedException {
+		final int k = grid.size();
+		final AtomicIntegerArray done = new AtomicIntegerArray(k);
+		converged = done;
+		points = Collections.unmodifiableList(grid);
+		final double[][] res = new double[k][COLUMNS];
+		synchronized (this) {
+			results = res;
+		}
+		final String template = readTemplate(xmlTemplatePath);
+		final Path dir = Files.createTempDirectory("asmc-sweep");
+		final byte[][] envs = new byte[k][];
+		final SeedSequence[] seeds = new SeedSequence[k];
+		try {
+			for (int i = 0; i < k; i++) {
+				final ModelCache.Model model = POINTS.get(instantiate(template, grid.get(i), dir, i));
+				envs[i] = model.getEnvironment();
+				seeds[i] = new SeedSequence(model.getSeed());
+			}
+		} finally {
+			deleteAll(dir);
+		}
+		final RunningStatistics[] stats = new RunningStatistics[k];
+		final List<SortedMap<Integer, Double>> early = new ArrayList<>(k);
+		final int[] submitted = new int[k];
+		for (int i = 0; i < k; i++) {
+			stats[i] = new RunningStatistics();
+			early.add(new TreeMap<Integer, Double>());
+			res[i][LOWER] = Double.NEGATIVE_INFINITY;
+			res[i][UPPER] = Double.POSITIVE_INFINITY;
+			res[i][MEAN] = Double.NaN;
+		}
+		int active = k;
+		/*
+		 * Runs submitted and not ingested yet: results buffered out of order
+		 * count against the queue depth, so the buffers stay bounded.
+		 */
+		int inFlight = 0;
+		while (active > 0) {
+			for (int next = neediest(done, submitted); inFlight < getQueueDepth() && next >= 0; next = neediest(done, submitted)) {
+				submit(new Job(next, submitted[next]), envs[next], seeds[next].getEngine(submitted[next]), steps, finalTime);
+				submitted[next]++;
+				inFlight++;
+			}
+			final Job arrival = takeArrival();
+			final int i = arrival.getGroup();
+			if (done.get(i) == 0) {
+				final SortedMap<Integer, Double> waiting = early.get(i);
+				waiting.put(arrival.getIndex(), arrival.getValue());
+				while (done.get(i) == 0 && waiting.containsKey(stats[i].getCount())) {
+					stats[i].add(waiting.remove(stats[i].getCount()));
+					inFlight--;
+					update(res[i], stats[i]);
+					final int n = stats[i].getCount();
+					if (n >= maxN || n >= minN && res[i][UPPER] - res[i][LOWER] < d) {
+						done.set(i, 1);
+						active--;
+						inFlight -= waiting.size();
+						waiting.clear();
+					}
+				}
+			} else {
+				inFlight--;
+			}
+		}
+		awaitRuns();
+	}
+
+	/*
+	 * The point still converging with the fewest runs submitted, or -1 if no
+	 * point needs more runs.
+	 */
+	private int neediest(final AtomicIntegerArray done, final int[] submitted) {
+		int res = -1;
+		for (int i = 0; i < submitted.length; i++) {
+			if (done.get(i) == 0 && submitted[i] < maxN && (res < 0 || submitted[i] < submitted[res])) {
+				res = i;
+			}
+		}
+		return res;
+	}
+
+	private void update(final double[] row, final RunningStatistics stats) {
+		final int n = stats.getCount();
+		final double hw = n < 2 ? Double.POSITIVE_INFINITY : AlchemistASMC.computeDeltaDynamic(stats.getStandardDeviation(), n, a) / 2;
+		synchronized (this) {
+			row[MEAN] = stats.getMean();
+			row[LOWER] = row[MEAN] - hw;
+			row[UPPER] = row[MEAN] + hw;
+			row[RUNS] = n;
+		}
+	}
+
+	static String readTemplate(final String xmlTemplatePath) throws IOException {
+		return new String(Files.readAllBytes(new File(xmlTemplatePath).toPath()), StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Writes the instance of the template for a point in the given directory,
+	 * and returns its path.
+	 */
+	static String instantiate(final String template, final Map<String, String> point, final Path dir, final int index) throws IOException {
+		String instance = template;
+		for (final Entry<String, String> param : point.entrySet()) {
+			instance = instance.replace("${" + param.getKey() + "}", param.getValue());
+		}
+		final Path file = dir.resolve("point-" + index + ".xml");
+		Files.write(file, instance.getBytes(StandardCharsets.UTF_8));
+		return file.toString();
+	}
+
+	static void deleteAll(final Path dir) {
+		final File[] files = dir.toFile().listFiles();
+		if (files != null) {
+			for (final File f : files) {
+				if (!f.delete()) {
+					L.warn("Unable to delete " + f);
+				}
+			}
+		}
+		if (!dir.toFile().delete()) {
+			L.warn("Unable to delete " + dir);
+		}
+	}
+
+	/**
+	 * @return the points of the last sweep, each mapping the name of every
+	 *         parameter to its value. The last parameter varies fastest.
+	 */
+	public List<Map<String, String>> getPoints() {
+		return points;
+	}
+
+	/**
+	 * Waits for the sweep to finish and returns the result matrix. Row i
+	 * refers to point i of {@link #getPoints()}, and the columns are
+	 * {@link #MEAN}, {@link #LOWER}, {@link #UPPER} and {@link #RUNS}.
+	 *
+	 * @return the result matrix
+	 */
+	public double[][] getResults() {
+		waitForCompletion();
+		return getPartialResults();
+	}
+
+	/**
+	 * Returns the result matrix as it is now, without waiting for the sweep
+	 * to finish.
+	 *
+	 * @return the result matrix, in the layout of {@link #getResults()}
+	 */
+	public synchronized double[][] getPartialResults() {
+		final double[][] res = new double[results.length][];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = results[i].clone();
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.modelchecker.interfaces.ResultStore;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Provides the property list view on top of the stored results.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public abstract class AbstractResultStore<D> implements ResultStore<D> {
+
+	private static final long serialVersionUID = -2591768848227719271L;
+
+	@Override
+	public List<Property<?, ?, D>> asPropertyList() {
+		return new AbstractList<Property<?, ?, D>>() {
+			@Override
+			public Property<?, ?, D> get(final int index) {
+				return new ConstantProperty<>(AbstractResultStore.this.get(index));
+			}
+
+			@Override
+			public int size() {
+				return AbstractResultStore.this.size();
+			}
+		};
+	}
+
+	/**
+	 * @param i
+	 *            the index to check
+	 */
+	protected void checkIndex(final int i) {
+		if (i < 0 || i >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size());
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.StopCriterion;
+
+import org.apache.commons.math3.distribution.BetaDistribution;
+import org.apache.commons.math3.distribution.NormalDistribution;
+
+/**
+ * Bayesian sequential estimation of the probability of a Boolean property. A
+ * Beta(alpha, beta) prior is updated with every run, and the experiment stops
+ * as soon as the highest posterior density interval with the requested
+ * posterior probability is narrower than 2 * delta. Experiments using it
+ * reject the FOLD late sample policy, which would add runs after the stop.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class BetaPosteriorStopCriterion implements StopCriterion<Boolean> {
+
+	private static final long serialVersionUID = -3000431950437413066L;
+	private static final double GOLDEN = (Math.sqrt(5) - 1) / 2;
+	private static final int SEARCH_STEPS = 40;
+	private final double priorA;
+	private final double priorB;
+	private final double halfWidth;
+	private final double coverage;
+	private int successes;
+	private int failures;
+
+	/**
+	 * Builds a criterion with the uniform Beta(1, 1) prior.
+	 * 
+	 * @param delta
+	 *            half width of the required interval
+	 * @param probability
+	 *            posterior probability of the interval
+	 */
+	public BetaPosteriorStopCriterion(final double delta, final double probability) {
+		this(delta, probability, 1, 1);
+	}
+
+	/**
+	 * @param delta
+	 *            half width of the required interval
+	 * @param probability
+	 *            posterior probability of the interval
+	 * @param alpha
+	 *            first parameter of the Beta prior (prior successes)
+	 * @param beta
+	 *            second parameter of the Beta prior (prior failures)
+	 */
+	public BetaPosteriorStopCriterion(final double delta, final double probability, final double alpha, final double beta) {
+		if (alpha <= 0 || beta <= 0) {
+			throw new IllegalArgumentException("Beta prior parameters must be positive.");
+		}
+		if (probability <= 0 || probability >= 1) {
+			throw new IllegalArgumentException("Posterior probability must be in ]0, 1[.");
+		}
+		priorA = alpha;
+		priorB = beta;
+		halfWidth = delta;
+		coverage = probability;
+	}
+
+	@Override
+	public synchronized void update(final Boolean result) {
+		if (result) {
+			successes++;
+		} else {
+			failures++;
+		}
+	}
+
+	@Override
+	public boolean isSatisfied() {
+		final double[] hpd = getHPDInterval();
+		return hpd[1] - hpd[0] < 2 * halfWidth;
+	}
+
+	@Override
+	public synchronized double estimateRemainingSamples() {
+		final double a = priorA + successes;
+		final double b = priorB + failures;
+		final double mean = a / (a + b);
+		final double z = new NormalDistribution().inverseCumulativeProbability((1 + coverage) / 2);
+		return Math.ceil(z * z * mean * (1 - mean) / (halfWidth * halfWidth) - a - b);
+	}
+
+	@Override
+	public synchronized void reset() {
+		successes = 0;
+		failures = 0;
+	}
+
+	/**
+	 * @return the mean of the posterior distribution
+	 */
+	public synchronized double getPosteriorMean() {
+		final double a = priorA + successes;
+		return a / (a + priorB + failures);
+	}
+
+	/**
+	 * Computes the highest posterior density interval by looking for the
+	 * narrowest interval having the requested posterior probability.
+	 * 
+	 * @return an array whose elements are the lower and upper bounds of the
+	 *         interval
+	 */
+	public double[] getHPDInterval() {
+		final BetaDistribution posterior;
+		synchronized (this) {
+			posterior = new BetaDistribution(priorA + successes, priorB + failures);
+		}
+		/*
+		 * The width of the interval is unimodal in the probability mass left
+		 * below it: golden section search.
+		 */
+		double lo = 0;
+		double hi = 1 - coverage;
+		double x1 = hi - GOLDEN * (hi - lo);
+		double x2 = lo + GOLDEN * (hi - lo);
+		double w1 = width(posterior, x1);
+		double w2 = width(posterior, x2);
+		for (int i = 0; i < SEARCH_STEPS; i++) {
+			if (w1 < w2) {
+				hi = x2;
+				x2 = x1;
+				w2 = w1;
+				x1 = hi - GOLDEN * (hi - lo);
+				w1 = width(posterior, x1);
+			} else {
+				lo = x1;
+				x1 = x2;
+				w1 = w2;
+				x2 = lo + GOLDEN * (hi - lo);
+				w2 = width(posterior, x2);
+			}
+		}
+		final double q = (lo + hi) / 2;
+		return new double[] { posterior.inverseCumulativeProbability(q), posterior.inverseCumulativeProbability(q + coverage) };
+	}
+
+	private double width(final BetaDistribution posterior, final double lowerMass) {
+		return posterior.inverseCumulativeProbability(lowerMass + coverage) - posterior.inverseCumulativeProbability(lowerMass);
+	}
+
+}
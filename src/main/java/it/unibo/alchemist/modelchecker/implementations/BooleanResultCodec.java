@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+
+/**
+ * Encodes Boolean results in a single byte.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class BooleanResultCodec implements ResultCodec<Boolean> {
+
+	private static final long serialVersionUID = 1926574290817311044L;
+	private static final byte[] TRUE = { 1 };
+	private static final byte[] FALSE = { 0 };
+
+	@Override
+	public Boolean decode(final byte[] b) {
+		return b[0] != 0;
+	}
+
+	@Override
+	public byte[] encode(final Boolean d) {
+		return d ? TRUE.clone() : FALSE.clone();
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import java.util.Arrays;
+
+/**
+ * Stores Boolean results as single bits of a growable long array.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class BooleanResultStore extends AbstractResultStore<Boolean> {
+
+	private static final long serialVersionUID = -1296566545087150811L;
+	private static final int ADDRESS_BITS = 6;
+	private static final int INITIAL_WORDS = 16;
+	private long[] words = new long[INITIAL_WORDS];
+	private int size;
+
+	@Override
+	public void add(final Boolean d) {
+		final int word = size >>> ADDRESS_BITS;
+		if (word == words.length) {
+			words = Arrays.copyOf(words, words.length * 2);
+		}
+		if (d) {
+			words[word] |= 1L << size;
+		}
+		size++;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(words, 0L);
+		size = 0;
+	}
+
+	@Override
+	public Boolean get(final int i) {
+		checkIndex(i);
+		return (words[i >>> ADDRESS_BITS] & (1L << i)) != 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of true results
+	 */
+	public int countTrue() {
+		int res = 0;
+		final int used = (size + Long.SIZE - 1) >>> ADDRESS_BITS;
+		for (int i = 0; i < used; i++) {
+			res += Long.bitCount(words[i]);
+		}
+		return res;
+	}
+
+}
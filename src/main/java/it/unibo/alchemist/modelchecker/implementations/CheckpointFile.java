@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only, memory-mapped log of the results of the runs of an
+ * experiment. Together with the master seed stored in its header, it is all
+ * that is required to resume an experiment after the JVM died: the seed of
+ * every run is derived from the master seed and the run index (see
+ * {@link SeedSequence}).
+ * 
+ * The file is a fixed size header followed by chunks of records. Each record
+ * is the run index plus one, the length of the encoded result and the encoded
+ * result. The index is written last, so a record interrupted by a crash is
+ * never read back. Writes go to the operating system page cache, and are
+ * forced to the device at most once per flush interval. The file is locked
+ * while open, so that two experiments can not write it at the same time.
+ * Only the chunk being appended to is mapped: the previous ones are unmapped
+ * as soon as the next one is mapped, so the mapped memory does not grow with
+ * the file.
+ * 
+ * This class is not thread safe.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public final class CheckpointFile<D> implements Closeable {
+
+	/**
+	 * Default maximum time between two forced writes to the device.
+	 */
+	public static final long DEFAULT_FLUSH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+	private static final long MAGIC = 0x41534D43434B5054L;
+	private static final int VERSION = 1;
+	private static final int HEADER = 64;
+	private static final int CHUNK = 1 << 20;
+	private static final int RECORD_HEADER = 2 * Integer.BYTES;
+	private static final int PADDING = -1;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final ResultCodec<D> codec;
+	private final long master;
+	private final Map<Integer, D> recovered = new HashMap<>();
+	private final long flushInterval;
+	private MappedByteBuffer chunk;
+	private long chunkIndex;
+	private long lastFlush = System.nanoTime();
+	private boolean dirty;
+
+	private CheckpointFile(final File f, final ResultCodec<D> rc, final long masterSeed, final boolean resume, final long flushNanos) throws IOException {
+		codec = rc;
+		flushInterval = flushNanos;
+		raf = new RandomAccessFile(f, "rw");
+		channel = raf.getChannel();
+		try {
+			if (channel.tryLock() == null) {
+				throw new IOException(f + " is in use by another experiment.");
+			}
+			final MappedByteBuffer header;
+			if (resume) {
+				if (channel.size() < HEADER) {
+					throw new IOException(f + " is not a checkpoint.");
+				}
+				header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+				final boolean valid = header.getLong() == MAGIC && header.getInt() == VERSION;
+				master = header.getLong();
+				unmap(header);
+				if (!valid) {
+					throw new IOException(f + " is not a checkpoint.");
+				}
+				recover();
+			} else {
+				raf.setLength(0);
+				header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+				header.putLong(MAGIC).putInt(VERSION).putLong(masterSeed);
+				header.force();
+				unmap(header);
+				master = masterSeed;
+				mapChunk(0);
+			}
+		} catch (OverlappingFileLockException e) {
+			raf.close();
+			throw new IOException(f + " is in use by another experiment.", e);
+		} catch (IOException | RuntimeException e) {
+			releaseChunk();
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Tells whether a file holds a checkpoint which can be opened. A file
+	 * which is missing, shorter than the header or whose header was never
+	 * written, as after a crash while it was being created, does not.
+	 * 
+	 * @param f
+	 *            the file
+	 * @return false if the file does not hold any checkpoint and can be
+	 *         created anew, true otherwise
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static boolean isStarted(final File f) throws IOException {
+		if (f.length() < HEADER) {
+			return false;
+		}
+		try (RandomAccessFile in = new RandomAccessFile(f, "r")) {
+			return in.readLong() != 0;
+		}
+	}
+
+	/**
+	 * Creates a new checkpoint, overwriting any existing file.
+	 * 
+	 * @param f
+	 *            the file
+	 * @param rc
+	 *            the codec for the results
+	 * @param masterSeed
+	 *            the master seed of the experiment
+	 * @param <D>
+	 *            Property result type
+	 * @return the checkpoint
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public static <D> CheckpointFile<D> create(final File f, final ResultCodec<D> rc, final long masterSeed) throws IOException {
+		return new CheckpointFile<>(f, rc, masterSeed, false, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	/**
+	 * Opens an existing checkpoint, reading back all the results it contains,
+	 * and prepares it for appending new ones.
+	 * 
+	 * @param f
+	 *            the file
+	 * @param rc
+	 *            the codec for the results
+	 * @param <D>
+	 *            Property result type
+	 * @return the checkpoint
+	 * @throws IOException
+	 *             if the file can not be read or is not a checkpoint
+	 */
+	public static <D> CheckpointFile<D> open(final File f, final ResultCodec<D> rc) throws IOException {
+		return new CheckpointFile<>(f, rc, 0, true, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	private void recover() throws IOException {
+		final long size = channel.size();
+		for (long c = 0; HEADER + c * CHUNK < size; c++) {
+			mapChunk(c);
+			while (chunk.remaining() >= RECORD_HEADER) {
+				final int pos = chunk.position();
+				final int tag = chunk.getInt();
+				if (tag == 0) {
+					chunk.position(pos);
+					return;
+				}
+				if (tag == PADDING) {
+					break;
+				}
+				final byte[] data = new byte[chunk.getInt()];
+				chunk.get(data);
+				recovered.put(tag - 1, codec.decode(data));
+			}
+		}
+		mapChunk(Math.max(0, (size - HEADER + CHUNK - 1) / CHUNK));
+	}
+
+	private void mapChunk(final long c) throws IOException {
+		releaseChunk();
+		chunkIndex = c;
+		chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER + c * CHUNK, CHUNK);
+	}
+
+	private void releaseChunk() {
+		if (chunk != null) {
+			if (dirty) {
+				chunk.force();
+				dirty = false;
+			}
+			unmap(chunk);
+			chunk = null;
+		}
+	}
+
+	/*
+	 * A mapping is only released when its buffer is garbage collected, which
+	 * may take arbitrarily long since it takes no heap. The JDK has no public
+	 * way of releasing it earlier, so the cleaner of the buffer is invoked
+	 * reflectively: through Unsafe since Java 9, through the buffer itself
+	 * before. If neither is available, the mapping is left to the garbage
+	 * collector. The buffer must not be used afterwards.
+	 */
+	private static void unmap(final MappedByteBuffer buffer) {
+		try {
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			/*
+			 * Before Java 9.
+			 */
+		}
+		try {
+			final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			final Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			/*
+			 * Left to the garbage collector.
+			 */
+		}
+	}
+
+	/**
+	 * Appends the result of a run.
+	 * 
+	 * @param run
+	 *            the index of the run
+	 * @param d
+	 *            the result of the run
+	 * @throws IOException
+	 *             if the file can not be extended
+	 */
+	public void append(final int run, final D d) throws IOException {
+		final byte[] data = codec.encode(d);
+		final int needed = RECORD_HEADER + data.length;
+		if (needed > CHUNK) {
+			throw new IllegalArgumentException("Encoded result too large: " + data.length + " bytes.");
+		}
+		if (chunk.remaining() < needed) {
+			if (chunk.remaining() >= Integer.BYTES) {
+				chunk.putInt(chunk.position(), PADDING);
+			}
+			mapChunk(chunkIndex + 1);
+		}
+		final int pos = chunk.position();
+		chunk.putInt(pos + Integer.BYTES, data.length);
+		chunk.position(pos + RECORD_HEADER);
+		chunk.put(data);
+		chunk.putInt(pos, run + 1);
+		dirty = true;
+		final long now = System.nanoTime();
+		if (now - lastFlush >= flushInterval) {
+			flush();
+			lastFlush = now;
+		}
+	}
+
+	/**
+	 * Forces all the appended results to the storage device.
+	 */
+	public void flush() {
+		if (dirty) {
+			chunk.force();
+			dirty = false;
+		}
+	}
+
+	/**
+	 * @return the master seed of the experiment
+	 */
+	public long getMasterSeed() {
+		return master;
+	}
+
+	/**
+	 * @return the results read back when the checkpoint was opened, by run
+	 *         index
+	 */
+	public Map<Integer, D> getRecoveredResults() {
+		return Collections.unmodifiableMap(recovered);
+	}
+
+	@Override
+	public void close() throws IOException {
+		releaseChunk();
+		raf.close();
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.AlchemistASMC;
+import it.unibo.alchemist.modelchecker.interfaces.StopCriterion;
+
+/**
+ * Stops once the sample size computed with
+ * {@link AlchemistASMC#computeSampleSizeUB(double, double)} has been reached,
+ * regardless of the results.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public class ChernoffStopCriterion<D> implements StopCriterion<D> {
+
+	private static final long serialVersionUID = -4386453870577850773L;
+	private final int maxN;
+	private int n;
+
+	/**
+	 * @param delta
+	 *            approximation
+	 * @param alpha
+	 *            confidence
+	 */
+	public ChernoffStopCriterion(final double delta, final double alpha) {
+		maxN = AlchemistASMC.computeSampleSizeUB(delta, alpha);
+	}
+
+	@Override
+	public synchronized void update(final D result) {
+		n++;
+	}
+
+	@Override
+	public synchronized boolean isSatisfied() {
+		return n >= maxN;
+	}
+
+	@Override
+	public synchronized double estimateRemainingSamples() {
+		return maxN - n;
+	}
+
+	@Override
+	public synchronized void reset() {
+		n = 0;
+	}
+
+}
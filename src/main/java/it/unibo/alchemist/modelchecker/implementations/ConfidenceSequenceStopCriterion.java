@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.StopCriterion;
+
+/**
+ * Stops as soon as an anytime-valid confidence sequence for the mean of
+ * bounded results is narrower than 2 * delta. Unlike a fixed-n interval, the
+ * coverage guarantee holds under continuous monitoring, so the check can be
+ * performed after every single run without inflating the error rate. The
+ * sequence is the predictable plug-in empirical Bernstein one by
+ * Waudby-Smith and Ramdas, intersected over time; each update costs O(1).
+ * Experiments using it reject the FOLD late sample policy, which would add
+ * runs after the stop.
+ * 
+ * Boolean results are mapped to 1 (true) and 0 (false), numeric results must
+ * lie within the bounds given at construction time.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type, either Boolean or a Number
+ */
+public class ConfidenceSequenceStopCriterion<D> implements StopCriterion<D> {
+
+	private static final long serialVersionUID = 2925227251245001596L;
+	private static final double MAX_LAMBDA = 0.5;
+	private static final double PRIOR_MEAN = 0.5;
+	private static final double PRIOR_VARIANCE = 0.25;
+	private final double halfWidth;
+	private final double min;
+	private final double range;
+	private final double logTerm;
+	private int n;
+	private double sum;
+	private double mean;
+	private double squares;
+	private double lambdaSum;
+	private double weightedSum;
+	private double penalty;
+	private double lower;
+	private double upper;
+
+	/**
+	 * Builds a criterion for results in [0, 1], such as Boolean ones.
+	 * 
+	 * @param delta
+	 *            half width of the required interval
+	 * @param alpha
+	 *            confidence
+	 */
+	public ConfidenceSequenceStopCriterion(final double delta, final double alpha) {
+		this(delta, alpha, 0, 1);
+	}
+
+	/**
+	 * @param delta
+	 *            half width of the required interval
+	 * @param alpha
+	 *            confidence
+	 * @param lowerBound
+	 *            minimum value a result can take
+	 * @param upperBound
+	 *            maximum value a result can take
+	 */
+	public ConfidenceSequenceStopCriterion(final double delta, final double alpha, final double lowerBound, final double upperBound) {
+		if (upperBound <= lowerBound) {
+			throw new IllegalArgumentException("Empty range [" + lowerBound + ", " + upperBound + "]");
+		}
+		min = lowerBound;
+		range = upperBound - lowerBound;
+		halfWidth = delta / range;
+		logTerm = Math.log(2 / alpha);
+		reset();
+	}
+
+	@Override
+	public synchronized void update(final D result) {
+		final double x = normalize(result);
+		final double variance = (PRIOR_VARIANCE + squares) / (n + 1);
+		final double previousMean = mean;
+		n++;
+		final double lambda = Math.min(MAX_LAMBDA, Math.sqrt(2 * logTerm / (variance * n * Math.log(1 + n))));
+		lambdaSum += lambda;
+		weightedSum += lambda * x;
+		penalty += (x - previousMean) * (x - previousMean) * (-Math.log(1 - lambda) - lambda);
+		sum += x;
+		mean = (PRIOR_MEAN + sum) / (n + 1);
+		squares += (x - mean) * (x - mean);
+		final double center = weightedSum / lambdaSum;
+		final double hw = (logTerm + penalty) / lambdaSum;
+		lower = Math.max(lower, center - hw);
+		upper = Math.min(upper, center + hw);
+	}
+
+	@Override
+	public synchronized boolean isSatisfied() {
+		return upper - lower < 2 * halfWidth;
+	}
+
+	@Override
+	public synchronized double estimateRemainingSamples() {
+		if (n == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		final double ratio = (upper - lower) / (2 * halfWidth);
+		return Math.ceil(n * ratio * ratio) - n;
+	}
+
+	@Override
+	public final synchronized void reset() {
+		n = 0;
+		sum = 0;
+		mean = PRIOR_MEAN;
+		squares = 0;
+		lambdaSum = 0;
+		weightedSum = 0;
+		penalty = 0;
+		lower = 0;
+		upper = 1;
+	}
+
+	/**
+	 * @return an array whose elements are the lower and upper bounds of the
+	 *         current confidence sequence, in the scale of the results
+	 */
+	public synchronized double[] getInterval() {
+		return new double[] { min + lower * range, min + upper * range };
+	}
+
+	private double normalize(final D result) {
+		final double x;
+		if (result instanceof Boolean) {
+			x = ((Boolean) result) ? 1 : 0;
+		} else if (result instanceof Number) {
+			x = (((Number) result).doubleValue() - min) / range;
+		} else {
+			throw new IllegalArgumentException(result + " is neither a Boolean nor a Number.");
+		}
+		if (x < 0 || x > 1) {
+			throw new IllegalArgumentException(result + " is out of the declared range.");
+		}
+		return x;
+	}
+
+}
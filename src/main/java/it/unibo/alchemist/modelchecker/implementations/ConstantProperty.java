@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.interfaces.Observation;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+/**
+ * A property whose result is fixed. Used to present results which have
+ * already been extracted from their simulations as properties.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ * @param <K>
+ *            Observation result type
+ * @param <R>
+ *            Property result type
+ */
+public final class ConstantProperty<T, K, R> implements Property<T, K, R> {
+
+	private static final long serialVersionUID = 5150312569093096447L;
+	private final R res;
+
+	/**
+	 * @param result
+	 *            the result of this property
+	 */
+	public ConstantProperty(final R result) {
+		res = result;
+	}
+
+	@Override
+	public void addObservation(final Observation<K, T> obs) {
+		/*
+		 * The result is fixed, observations can not change it.
+		 */
+	}
+
+	@Override
+	public boolean canChange() {
+		return false;
+	}
+
+	@Override
+	public ConstantProperty<T, K, R> clone() {
+		return this;
+	}
+
+	@Override
+	public R getResult() {
+		return res;
+	}
+
+	@Override
+	public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+	}
+
+	@Override
+	public void initialized(final IEnvironment<T> env) {
+	}
+
+	@Override
+	public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+	}
+
+}
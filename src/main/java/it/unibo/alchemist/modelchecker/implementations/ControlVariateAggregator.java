@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregatorVariance;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregates numeric results returning their mean, corrected with control
+ * variates. Each result is an array whose first element is the value of
+ * interest y, and whose other elements are auxiliary values x1..xk with known
+ * means, correlated with y (booleans are mapped to 1 and 0). The estimate is
+ * mean(y) - b * (mean(x) - known means), where the coefficients b minimize the
+ * variance and are estimated online by least squares. The variance function
+ * is the standard deviation of the regression residuals, which is smaller
+ * than the one of y by a factor sqrt(1 - R^2).
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class ControlVariateAggregator implements IncrementalPropertyAggregatorVariance<Double, Object[]> {
+
+	private static final long serialVersionUID = 3995436185934720917L;
+	private static final double EPSILON = 1e-12;
+	private final double[] mu;
+	private final double[] mean;
+	private final double[][] comoment;
+	private int n;
+
+	/**
+	 * @param knownMeans
+	 *            the known means of the auxiliary values, in order
+	 */
+	public ControlVariateAggregator(final double... knownMeans) {
+		mu = Arrays.copyOf(knownMeans, knownMeans.length);
+		mean = new double[mu.length + 1];
+		comoment = new double[mu.length + 1][mu.length + 1];
+	}
+
+	@Override
+	public Double aggregate(final List<? extends Property<?, ?, Object[]>> pList) {
+		return scan(pList).aggregate();
+	}
+
+	@Override
+	public double getS(final List<? extends Property<?, ?, Object[]>> pList) {
+		return scan(pList).getS();
+	}
+
+	@Override
+	public synchronized void add(final Object[] d) {
+		if (d.length != mean.length) {
+			throw new IllegalArgumentException("Expected " + mean.length + " values, got " + d.length + ".");
+		}
+		n++;
+		final double[] delta = new double[mean.length];
+		for (int i = 0; i < mean.length; i++) {
+			delta[i] = toDouble(d[i]) - mean[i];
+			mean[i] += delta[i] / n;
+		}
+		for (int i = 0; i < mean.length; i++) {
+			for (int j = 0; j < mean.length; j++) {
+				comoment[i][j] += delta[i] * (toDouble(d[j]) - mean[j]);
+			}
+		}
+	}
+
+	@Override
+	public synchronized Double aggregate() {
+		if (n == 0) {
+			return Double.NaN;
+		}
+		final double[] b = coefficients();
+		double res = mean[0];
+		for (int j = 0; j < mu.length; j++) {
+			res -= b[j] * (mean[j + 1] - mu[j]);
+		}
+		return res;
+	}
+
+	/**
+	 * @return the residual standard deviation, infinite until there are more
+	 *         results than auxiliary values plus one
+	 */
+	@Override
+	public synchronized double getS() {
+		final int df = n - mu.length - 1;
+		if (df <= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		final double[] b = coefficients();
+		double residual = comoment[0][0];
+		for (int j = 0; j < mu.length; j++) {
+			residual -= b[j] * comoment[j + 1][0];
+		}
+		return Math.sqrt(Math.max(0, residual) / df);
+	}
+
+	/**
+	 * @return the coefficients of the auxiliary values estimated so far
+	 */
+	public synchronized double[] getCoefficients() {
+		return coefficients();
+	}
+
+	@Override
+	public synchronized int getCount() {
+		return n;
+	}
+
+	@Override
+	public synchronized void reset() {
+		n = 0;
+		Arrays.fill(mean, 0);
+		for (final double[] row : comoment) {
+			Arrays.fill(row, 0);
+		}
+	}
+
+	/*
+	 * Solves Cxx * b = Cxy by Gaussian elimination with partial pivoting. If
+	 * the auxiliary values are collinear, the redundant ones get a null
+	 * coefficient.
+	 */
+	private double[] coefficients() {
+		final int k = mu.length;
+		final double[][] m = new double[k][k + 1];
+		for (int i = 0; i < k; i++) {
+			for (int j = 0; j < k; j++) {
+				m[i][j] = comoment[i + 1][j + 1];
+			}
+			m[i][k] = comoment[i + 1][0];
+		}
+		final boolean[] skip = new boolean[k];
+		for (int c = 0; c < k; c++) {
+			int pivot = c;
+			for (int r = c + 1; r < k; r++) {
+				if (Math.abs(m[r][c]) > Math.abs(m[pivot][c])) {
+					pivot = r;
+				}
+			}
+			final double[] tmp = m[c];
+			m[c] = m[pivot];
+			m[pivot] = tmp;
+			if (Math.abs(m[c][c]) <= EPSILON * Math.max(1, Math.abs(comoment[c + 1][c + 1]))) {
+				skip[c] = true;
+				continue;
+			}
+			for (int r = 0; r < k; r++) {
+				if (r != c) {
+					final double f = m[r][c] / m[c][c];
+					for (int j = c; j <= k; j++) {
+						m[r][j] -= f * m[c][j];
+					}
+				}
+			}
+		}
+		final double[] res = new double[k];
+		for (int c = 0; c < k; c++) {
+			res[c] = skip[c] ? 0 : m[c][k] / m[c][c];
+		}
+		return res;
+	}
+
+	private ControlVariateAggregator scan(final List<? extends Property<?, ?, Object[]>> pList) {
+		final ControlVariateAggregator res = new ControlVariateAggregator(mu);
+		synchronized (pList) {
+			for (final Property<?, ?, Object[]> p : pList) {
+				res.add(p.getResult());
+			}
+		}
+		return res;
+	}
+
+	private static double toDouble(final Object o) {
+		if (o instanceof Boolean) {
+			return ((Boolean) o) ? 1 : 0;
+		}
+		return ((Number) o).doubleValue();
+	}
+
+}
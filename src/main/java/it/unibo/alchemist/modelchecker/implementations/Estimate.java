@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ *
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+/**
+ * An estimate published while an experiment is running: the aggregated
+ * result of the runs completed so far, the half width of the interval
+ * achieved with them, and their number.
+ *
+ * @author Danilo Pianini
+ *
+ * @param <R>
+ *            Aggregated result type
+ */
+public final class Estimate<R> {
+
+	private final R result;
+	private final double halfWidth;
+	private final int n;
+
+	/**
+	 * @param res
+	 *            the aggregated result
+	 * @param hw
+	 *            the half width of the interval
+	 * @param runs
+	 *            the number of runs aggregated
+	 */
+	public Estimate(final R res, final double hw, final int runs) {
+		result = res;
+		halfWidth = hw;
+		n = runs;
+	}
+
+	/**
+	 * @return the aggregated result
+	 */
+	public R getResult() {
+		return result;
+	}
+
+	/**
+	 * @return the half width of the interval
+	 */
+	public double getHalfWidth() {
+		return halfWidth;
+	}
+
+	/**
+	 * @return the number of runs aggregated
+	 */
+	public int getN() {
+		return n;
+	}
+
+	@Override
+	public String toString() {
+		return result + " +/- " + halfWidth + " (" + n + " runs)";
+	}
+
+}
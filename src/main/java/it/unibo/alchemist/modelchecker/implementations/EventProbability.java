@@ -8,8 +8,8 @@
  */
 package it.unibo.alchemist.modelchecker.implementations;
 
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregator;
 import it.unibo.alchemist.modelchecker.interfaces.Property;
-import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregator;
 
 import java.util.List;
 
@@ -17,19 +17,63 @@ import java.util.List;
  * @author Danilo Pianini
  * 
  */
-public class EventProbability implements PropertyAggregator<Double, Boolean> {
+public class EventProbability implements IncrementalPropertyAggregator<Double, Boolean> {
 
 	private static final long serialVersionUID = -1080032955845002876L;
+	private int count;
+	private int successes;
 
 	@Override
 	public Double aggregate(final List<? extends Property<?, ?, Boolean>> pList) {
-		int count = 0;
-		for (final Property<?, ?, Boolean> p : pList) {
-			if (p.getResult()) {
-				count++;
+		return ((double) countSuccesses(pList)) / ((double) pList.size());
+	}
+
+	@Override
+	public synchronized void add(final Boolean d) {
+		count++;
+		if (d) {
+			successes++;
+		}
+	}
+
+	@Override
+	public synchronized Double aggregate() {
+		return ((double) successes) / ((double) count);
+	}
+
+	@Override
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of runs added so far whose result is true
+	 */
+	public synchronized int getSuccesses() {
+		return successes;
+	}
+
+	@Override
+	public synchronized void reset() {
+		count = 0;
+		successes = 0;
+	}
+
+	/**
+	 * @param pList
+	 *            the list of properties
+	 * @return the number of properties whose result is true
+	 */
+	protected static int countSuccesses(final List<? extends Property<?, ?, Boolean>> pList) {
+		int res = 0;
+		synchronized (pList) {
+			for (final Property<?, ?, Boolean> p : pList) {
+				if (p.getResult()) {
+					res++;
+				}
 			}
 		}
-		return ((double) count) / ((double) pList.size());
+		return res;
 	}
 
 }
@@ -10,14 +10,14 @@ package it.unibo.alchemist.modelchecker.implementations;
 
 import java.util.List;
 
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregatorVariance;
 import it.unibo.alchemist.modelchecker.interfaces.Property;
-import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregatorVariance;
 
 /**
  * @author Davide Ensini
  * 
  */
-public class EventProbabilityVariance extends EventProbability implements PropertyAggregatorVariance<Double, Boolean> {
+public class EventProbabilityVariance extends EventProbability implements IncrementalPropertyAggregatorVariance<Double, Boolean> {
 
 	/**
 	 * 
@@ -26,14 +26,17 @@ public class EventProbabilityVariance extends EventProbability implements Proper
 
 	@Override
 	public double getS(final List<? extends Property<?, ?, Boolean>> pList) {
-		double count = 0;
-		for (final Property<?, ?, Boolean> p : pList) {
-			if (p.getResult()) {
-				count++;
-			}
-		}
-		final double squareSum = count * count / pList.size();
-		return Math.sqrt((count - squareSum) / (pList.size() - 1));
+		return computeS(countSuccesses(pList), pList.size());
+	}
+
+	@Override
+	public synchronized double getS() {
+		return computeS(getSuccesses(), getCount());
+	}
+
+	private static double computeS(final double count, final int n) {
+		final double squareSum = count * count / n;
+		return Math.sqrt((count - squareSum) / (n - 1));
 	}
 
 }
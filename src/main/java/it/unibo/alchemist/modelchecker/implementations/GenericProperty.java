@@ -30,6 +30,7 @@ public abstract class GenericProperty<T, K, R> implements Property<T, K, R> {
 
 	private static final long serialVersionUID = -5079010184833195005L;
 	private final List<Observation<K, T>> observations = new ArrayList<>();
+	private boolean stopSimulation = true;
 
 	/**
 	 * Default constructor.
@@ -45,6 +46,7 @@ public abstract class GenericProperty<T, K, R> implements Property<T, K, R> {
 	 *            the property whose observations will be used
 	 */
 	protected GenericProperty(final GenericProperty<T, K, R> g) {
+		stopSimulation = g.stopSimulation;
 		for (final Observation<K, T> o : g.observations) {
 			observations.add(o.clone());
 		}
@@ -65,17 +67,27 @@ public abstract class GenericProperty<T, K, R> implements Property<T, K, R> {
 	/**
 	 * Checks whether it makes sense or not to continue executing this
 	 * simulation in order to evaluate this property. If not, stops the
-	 * simulation flow.
+	 * simulation flow, unless {@link #setStopSimulation(boolean)} disabled it.
 	 * 
 	 * @param env
 	 *            the environment
 	 */
 	protected void checkForStop(final IEnvironment<?> env) {
-		if (!canChange()) {
+		if (stopSimulation && !canChange()) {
 			Simulation.stop(env);
 		}
 	}
 
+	/**
+	 * @param stop
+	 *            false if this property must not stop the simulation when its
+	 *            value cannot change anymore, e.g. because other properties
+	 *            are observing the same simulation
+	 */
+	public void setStopSimulation(final boolean stop) {
+		stopSimulation = stop;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
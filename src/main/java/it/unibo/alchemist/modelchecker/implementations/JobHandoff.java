@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Binds the simulations configured by an executor to the jobs they were
+ * submitted for. The executor does not carry any descriptor along with a job,
+ * so the descriptor is offered right before submitting the job, and claimed
+ * when the executor configures the simulation. The submitter then waits for
+ * the claim before offering the next descriptor: since at most one
+ * descriptor is waiting at any time, every simulation gets the descriptor of
+ * its own job, whatever the order and the thread the executor configures
+ * simulations in. When the executor configures simulations while submitting
+ * them, the wait is over before it begins.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <J>
+ *            Job descriptor type
+ */
+public final class JobHandoff<J> {
+
+	private final AtomicReference<J> slot = new AtomicReference<>();
+	private final Semaphore claimed = new Semaphore(0);
+
+	/**
+	 * Offers the descriptor of the job about to be submitted.
+	 * 
+	 * @param job
+	 *            the descriptor
+	 */
+	public void offer(final J job) {
+		if (job == null) {
+			throw new IllegalArgumentException("The job descriptor can not be null.");
+		}
+		if (!slot.compareAndSet(null, job)) {
+			throw new IllegalStateException("The previous job has not been configured yet.");
+		}
+	}
+
+	/**
+	 * Claims the descriptor of the job being configured.
+	 * 
+	 * @return the descriptor
+	 */
+	public J claim() {
+		final J job = slot.getAndSet(null);
+		if (job == null) {
+			throw new IllegalStateException("No job is waiting to be configured.");
+		}
+		claimed.release();
+		return job;
+	}
+
+	/**
+	 * Waits until the last descriptor offered has been claimed.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void awaitClaim() throws InterruptedException {
+		claimed.acquire();
+	}
+
+	/**
+	 * Forgets any descriptor offered and not claimed yet.
+	 */
+	public void clear() {
+		slot.set(null);
+		claimed.drainPermits();
+	}
+
+}
@@ -8,42 +8,69 @@
  */
 package it.unibo.alchemist.modelchecker.implementations;
 
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregatorVariance;
 import it.unibo.alchemist.modelchecker.interfaces.Property;
-import it.unibo.alchemist.modelchecker.interfaces.PropertyAggregatorVariance;
 
 import java.util.List;
 
 /**
- * Aggregates double values returning their mean.
+ * Aggregates double values returning their mean. Results pushed with
+ * {@link #add(Number)} are folded into running statistics, so the mean and
+ * the variance of the data so far are available in constant time.
  * 
  * @author Davide Ensini
  * 
  * @param <T>
  *            Concentration type
  */
-public class MeanAggregator<T extends Number> implements PropertyAggregatorVariance<Double, T> {
+public class MeanAggregator<T extends Number> implements IncrementalPropertyAggregatorVariance<Double, T> {
 
 	private static final long serialVersionUID = 102979612426372191L;
+	private final RunningStatistics stats = new RunningStatistics();
 
 	@Override
 	public Double aggregate(final List<? extends Property<?, ?, T>> pList) {
-		double sum = 0;
-		synchronized (pList) {
-			for (final Property<?, ?, T> p : pList) {
-					sum += p.getResult().doubleValue();
-			}
-		}
-		return ((double) sum) / ((double) pList.size());
+		return scan(pList).getMean();
 	}
 
 	@Override
 	public double getS(final List<? extends Property<?, ?, T>> pList) {
-		final double mean = aggregate(pList);
-		double sum = 0;
-		for (final Property<?, ?, T> p : pList) {
-			sum += Math.pow(p.getResult().doubleValue(), 2.0);
+		return scan(pList).getStandardDeviation();
+	}
+
+	@Override
+	public synchronized void add(final T d) {
+		stats.add(d.doubleValue());
+	}
+
+	@Override
+	public synchronized Double aggregate() {
+		return stats.getMean();
+	}
+
+	@Override
+	public synchronized double getS() {
+		return stats.getStandardDeviation();
+	}
+
+	@Override
+	public synchronized int getCount() {
+		return stats.getCount();
+	}
+
+	@Override
+	public synchronized void reset() {
+		stats.reset();
+	}
+
+	private static <T extends Number> RunningStatistics scan(final List<? extends Property<?, ?, T>> pList) {
+		final RunningStatistics res = new RunningStatistics();
+		synchronized (pList) {
+			for (final Property<?, ?, T> p : pList) {
+				res.add(p.getResult().doubleValue());
+			}
 		}
-		return Math.sqrt((sum - mean * mean * pList.size()) / (pList.size() - 1));
+		return res;
 	}
 
 }
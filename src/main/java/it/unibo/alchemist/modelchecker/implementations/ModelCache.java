@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.language.EnvironmentBuilder;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Cache of parsed models. For each model it keeps the serialized environment
+ * and the random seed, so that experiments on a model which has already been
+ * parsed do not parse its XML specification again. On a miss the model is
+ * built once: the environment is serialized and the seed is read from that
+ * same build. Entries are identified by
+ * the canonical path and a hash of the content of the specification, so that
+ * a modified file is parsed again. The cache is bounded by the total size of
+ * the serialized environments, and evicts the least recently used entries
+ * first.
+ * 
+ * This class is thread safe.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public final class ModelCache {
+
+	/**
+	 * Default capacity of the cache, in bytes.
+	 */
+	public static final long DEFAULT_CAPACITY = 64L << 20;
+	private static final ModelCache SHARED = new ModelCache(DEFAULT_CAPACITY);
+	private static final int INITIAL_SIZE = 16;
+	private static final float LOAD_FACTOR = 0.75f;
+	private final Map<Key, Model> models = new LinkedHashMap<>(INITIAL_SIZE, LOAD_FACTOR, true);
+	private final long capacity;
+	private long size;
+
+	/**
+	 * @param capacityBytes
+	 *            the maximum total size of the serialized environments kept.
+	 *            With 0, nothing is kept.
+	 */
+	public ModelCache(final long capacityBytes) {
+		if (capacityBytes < 0) {
+			throw new IllegalArgumentException("Capacity can not be negative.");
+		}
+		capacity = capacityBytes;
+	}
+
+	/**
+	 * @return the cache shared by default by all the model checkers
+	 */
+	public static ModelCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns the parsed model, parsing it if it is not in the cache.
+	 * 
+	 * @param xmlFilePath
+	 *            Alchemist XML specification
+	 * @return the parsed model
+	 * @throws InstantiationException
+	 *             if the model can not be built
+	 * @throws IllegalAccessException
+	 *             if the model can not be built
+	 * @throws InvocationTargetException
+	 *             if the model can not be built
+	 * @throws ClassNotFoundException
+	 *             if the model can not be built
+	 * @throws SAXException
+	 *             if the specification can not be parsed
+	 * @throws IOException
+	 *             if the specification can not be read
+	 * @throws ParserConfigurationException
+	 *             if the specification can not be parsed
+	 */
+	public Model get(final String xmlFilePath)
+			throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, SAXException, IOException, ParserConfigurationException {
+		final File f = new File(xmlFilePath).getCanonicalFile();
+		final Key key = new Key(f.getPath(), hash(Files.readAllBytes(f.toPath())));
+		synchronized (this) {
+			final Model cached = models.get(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		final EnvironmentBuilder<?> ebo = new EnvironmentBuilder<>(xmlFilePath);
+		ebo.buildEnvironment();
+		final Model res = new Model(serialize(ebo.getEnvironment()), ebo.getRandomEngine().getSeed());
+		put(key, res);
+		return res;
+	}
+
+	private synchronized void put(final Key key, final Model m) {
+		if (m.env.length > capacity) {
+			return;
+		}
+		final Model old = models.put(key, m);
+		if (old != null) {
+			size -= old.env.length;
+		}
+		size += m.env.length;
+		for (final Iterator<Model> it = models.values().iterator(); size > capacity && it.hasNext();) {
+			size -= it.next().env.length;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Removes all the entries.
+	 */
+	public synchronized void clear() {
+		models.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return the total size of the serialized environments kept, in bytes
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Serializes an environment in the form the executors accept.
+	 * 
+	 * @param env
+	 *            the environment
+	 * @return the serialized environment
+	 * @throws IOException
+	 *             if the environment can not be serialized
+	 */
+	public static byte[] serialize(final IEnvironment<?> env) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(env);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] hash(final byte[] content) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A parsed model. The serialized environment is shared, and must not be
+	 * modified.
+	 */
+	public static final class Model {
+
+		private final byte[] env;
+		private final long seed;
+
+		private Model(final byte[] environment, final long randomSeed) {
+			env = environment;
+			seed = randomSeed;
+		}
+
+		/**
+		 * @return the serialized environment
+		 */
+		public byte[] getEnvironment() {
+			return env;
+		}
+
+		/**
+		 * @return the random seed of the model
+		 */
+		public long getSeed() {
+			return seed;
+		}
+	}
+
+	private static final class Key {
+
+		private final String path;
+		private final byte[] hash;
+
+		private Key(final String p, final byte[] h) {
+			path = p;
+			hash = h;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (o instanceof Key) {
+				final Key k = (Key) o;
+				return path.equals(k.path) && Arrays.equals(hash, k.hash);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return path.hashCode() ^ Arrays.hashCode(hash);
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregator;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates the results of a {@link PropertySet} with one aggregator per
+ * property. The aggregated result is an array with the aggregation of each
+ * property, in insertion order.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class MultiPropertyAggregator implements IncrementalPropertyAggregator<Object[], Object[]> {
+
+	private static final long serialVersionUID = 6468926779733318046L;
+	private final List<IncrementalPropertyAggregator<?, Object>> aggregators = new ArrayList<>();
+	private int count;
+
+	/**
+	 * @param pa
+	 *            the aggregator for the next property of the set
+	 */
+	@SuppressWarnings("unchecked")
+	public void addAggregator(final IncrementalPropertyAggregator<?, ?> pa) {
+		aggregators.add((IncrementalPropertyAggregator<?, Object>) pa);
+	}
+
+	/**
+	 * @param i
+	 *            the index of the property
+	 * @return the aggregator for the property
+	 */
+	public IncrementalPropertyAggregator<?, ?> getAggregator(final int i) {
+		return aggregators.get(i);
+	}
+
+	@Override
+	public Object[] aggregate(final List<? extends Property<?, ?, Object[]>> p) {
+		final Object[] res = new Object[aggregators.size()];
+		for (int i = 0; i < res.length; i++) {
+			final List<Property<?, ?, Object>> column = new ArrayList<>(p.size());
+			for (final Property<?, ?, Object[]> prop : p) {
+				column.add(new ConstantProperty<>(prop.getResult()[i]));
+			}
+			res[i] = aggregators.get(i).aggregate(column);
+		}
+		return res;
+	}
+
+	@Override
+	public synchronized void add(final Object[] d) {
+		for (int i = 0; i < aggregators.size(); i++) {
+			aggregators.get(i).add(d[i]);
+		}
+		count++;
+	}
+
+	@Override
+	public synchronized Object[] aggregate() {
+		final Object[] res = new Object[aggregators.size()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = aggregators.get(i).aggregate();
+		}
+		return res;
+	}
+
+	@Override
+	public synchronized int getCount() {
+		return count;
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (final IncrementalPropertyAggregator<?, Object> pa : aggregators) {
+			pa.reset();
+		}
+		count = 0;
+	}
+
+}
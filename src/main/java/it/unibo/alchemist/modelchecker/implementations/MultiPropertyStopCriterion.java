@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.StopCriterion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Combines one stop criterion per property of a {@link PropertySet}: each
+ * criterion is fed the result of its own property, and the experiment stops
+ * only when all of them are satisfied.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class MultiPropertyStopCriterion implements StopCriterion<Object[]> {
+
+	private static final long serialVersionUID = -6226458618373693431L;
+	private final List<StopCriterion<Object>> criteria = new ArrayList<>();
+
+	/**
+	 * @param c
+	 *            the criterion for the next property of the set
+	 */
+	@SuppressWarnings("unchecked")
+	public void addCriterion(final StopCriterion<?> c) {
+		criteria.add((StopCriterion<Object>) c);
+	}
+
+	/**
+	 * @param i
+	 *            the index of the property
+	 * @param c
+	 *            the new criterion for the property
+	 */
+	@SuppressWarnings("unchecked")
+	public void setCriterion(final int i, final StopCriterion<?> c) {
+		criteria.set(i, (StopCriterion<Object>) c);
+	}
+
+	/**
+	 * @param i
+	 *            the index of the property
+	 * @return the criterion for the property
+	 */
+	public StopCriterion<?> getCriterion(final int i) {
+		return criteria.get(i);
+	}
+
+	@Override
+	public void update(final Object[] d) {
+		for (int i = 0; i < criteria.size(); i++) {
+			criteria.get(i).update(d[i]);
+		}
+	}
+
+	@Override
+	public boolean isSatisfied() {
+		for (final StopCriterion<Object> c : criteria) {
+			if (!c.isSatisfied()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public double estimateRemainingSamples() {
+		double res = 0;
+		for (final StopCriterion<Object> c : criteria) {
+			if (!c.isSatisfied()) {
+				res = Math.max(res, c.estimateRemainingSamples());
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public void reset() {
+		for (final StopCriterion<Object> c : criteria) {
+			c.reset();
+		}
+	}
+
+}
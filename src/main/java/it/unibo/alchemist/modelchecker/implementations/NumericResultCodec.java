@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes numeric results of the standard boxed types as a type tag followed
+ * by their value, using eight bytes at most.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public class NumericResultCodec<D extends Number> implements ResultCodec<D> {
+
+	private static final long serialVersionUID = -3437167755577893883L;
+	private static final byte DOUBLE = 0;
+	private static final byte FLOAT = 1;
+	private static final byte LONG = 2;
+	private static final byte INTEGER = 3;
+	private static final byte SHORT = 4;
+	private static final byte BYTE = 5;
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public D decode(final byte[] b) {
+		final ByteBuffer buf = ByteBuffer.wrap(b);
+		final Number res;
+		switch (buf.get()) {
+		case FLOAT:
+			res = buf.getFloat();
+			break;
+		case LONG:
+			res = buf.getLong();
+			break;
+		case INTEGER:
+			res = buf.getInt();
+			break;
+		case SHORT:
+			res = buf.getShort();
+			break;
+		case BYTE:
+			res = buf.get();
+			break;
+		default:
+			res = buf.getDouble();
+		}
+		return (D) res;
+	}
+
+	@Override
+	public byte[] encode(final D d) {
+		final ByteBuffer buf = ByteBuffer.allocate(Byte.BYTES + Long.BYTES);
+		if (d instanceof Float) {
+			buf.put(FLOAT).putFloat(d.floatValue());
+		} else if (d instanceof Long) {
+			buf.put(LONG).putLong(d.longValue());
+		} else if (d instanceof Integer) {
+			buf.put(INTEGER).putInt(d.intValue());
+		} else if (d instanceof Short) {
+			buf.put(SHORT).putShort(d.shortValue());
+		} else if (d instanceof Byte) {
+			buf.put(BYTE).put(d.byteValue());
+		} else {
+			buf.put(DOUBLE).putDouble(d.doubleValue());
+		}
+		final byte[] res = new byte[buf.position()];
+		System.arraycopy(buf.array(), 0, res, 0, res.length);
+		return res;
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import java.util.Arrays;
+
+/**
+ * Stores numeric results as primitive doubles, in fixed size segments so that
+ * growing never copies the data already stored. Results are converted back to
+ * the type of the stored results when read, or returned as Double if results
+ * of different types were stored: values of integral types wider than 53 bits
+ * may lose precision.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public class NumericResultStore<D extends Number> extends AbstractResultStore<D> {
+
+	private static final long serialVersionUID = 8591276380287906283L;
+	private static final int SEGMENT_BITS = 12;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+	private static final int INITIAL_SEGMENTS = 4;
+	private double[][] segments = new double[INITIAL_SEGMENTS][];
+	private Class<?> type;
+	private int size;
+
+	@Override
+	public void add(final D d) {
+		if (size == 0) {
+			type = d.getClass();
+		} else if (!type.equals(d.getClass())) {
+			type = Double.class;
+		}
+		final int segment = size >>> SEGMENT_BITS;
+		if (segment == segments.length) {
+			segments = Arrays.copyOf(segments, segments.length * 2);
+		}
+		if (segments[segment] == null) {
+			segments[segment] = new double[SEGMENT_SIZE];
+		}
+		segments[segment][size & SEGMENT_MASK] = d.doubleValue();
+		size++;
+	}
+
+	@Override
+	public void clear() {
+		segments = new double[INITIAL_SEGMENTS][];
+		size = 0;
+		type = null;
+	}
+
+	/**
+	 * @param i
+	 *            the position of the result, in insertion order
+	 * @return the result as a primitive double
+	 */
+	public double getDouble(final int i) {
+		checkIndex(i);
+		return segments[i >>> SEGMENT_BITS][i & SEGMENT_MASK];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public D get(final int i) {
+		final double v = getDouble(i);
+		final Number res;
+		if (Integer.class.equals(type)) {
+			res = (int) v;
+		} else if (Long.class.equals(type)) {
+			res = (long) v;
+		} else if (Float.class.equals(type)) {
+			res = (float) v;
+		} else if (Short.class.equals(type)) {
+			res = (short) v;
+		} else if (Byte.class.equals(type)) {
+			res = (byte) v;
+		} else {
+			res = v;
+		}
+		return (D) res;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return a copy of all the results as primitive doubles
+	 */
+	public double[] toDoubleArray() {
+		final double[] res = new double[size];
+		for (int s = 0; s * SEGMENT_SIZE < size; s++) {
+			System.arraycopy(segments[s], 0, res, s * SEGMENT_SIZE, Math.min(SEGMENT_SIZE, size - s * SEGMENT_SIZE));
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores results of any type as references. Used when no more compact
+ * representation is available.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public class ObjectResultStore<D> extends AbstractResultStore<D> {
+
+	private static final long serialVersionUID = 4683357911207318339L;
+	private final List<D> results = new ArrayList<>();
+
+	@Override
+	public void add(final D d) {
+		results.add(d);
+	}
+
+	@Override
+	public void clear() {
+		results.clear();
+	}
+
+	@Override
+	public D get(final int i) {
+		return results.get(i);
+	}
+
+	@Override
+	public int size() {
+		return results.size();
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.core.implementations.Simulation;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.interfaces.Observation;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates multiple properties on the same simulation. Its result is an array
+ * with the result of each property, in insertion order. The simulation is
+ * stopped only when none of the properties can change anymore. Properties
+ * extending {@link GenericProperty} are prevented from stopping the
+ * simulation on their own; other properties must not stop it.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public class PropertySet<T> implements Property<T, Object, Object[]> {
+
+	private static final long serialVersionUID = -2139427402960346112L;
+	private final List<Property<T, ?, ?>> properties = new ArrayList<>();
+
+	/**
+	 * Default constructor.
+	 */
+	public PropertySet() {
+		super();
+	}
+
+	/**
+	 * Builds a new property set, cloning all the properties of another one.
+	 * 
+	 * @param ps
+	 *            the property set to clone
+	 */
+	protected PropertySet(final PropertySet<T> ps) {
+		for (final Property<T, ?, ?> p : ps.properties) {
+			properties.add(p.clone());
+		}
+	}
+
+	/**
+	 * Adds a clone of a property, so that the one passed is left untouched.
+	 * 
+	 * @param p
+	 *            the property to add
+	 * @return the index of the property result in the result array
+	 */
+	public int addProperty(final Property<T, ?, ?> p) {
+		final Property<T, ?, ?> clone = p.clone();
+		if (clone instanceof GenericProperty) {
+			((GenericProperty<T, ?, ?>) clone).setStopSimulation(false);
+		}
+		properties.add(clone);
+		return properties.size() - 1;
+	}
+
+	/**
+	 * @param i
+	 *            the index of the property
+	 * @return the clone of the property held by this set
+	 */
+	public Property<T, ?, ?> getProperty(final int i) {
+		return properties.get(i);
+	}
+
+	/**
+	 * @return the number of properties in this set
+	 */
+	public int size() {
+		return properties.size();
+	}
+
+	/**
+	 * Adds an observation to every property of this set. Its values must be
+	 * of the observation type of each of them.
+	 * 
+	 * @param obs
+	 *            the observation
+	 */
+	@Override
+	public void addObservation(final Observation<Object, T> obs) {
+		for (final Property<T, ?, ?> p : properties) {
+			addObservation(p, obs);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T, K> void addObservation(final Property<T, K, ?> p, final Observation<Object, T> obs) {
+		p.addObservation((Observation<K, T>) obs);
+	}
+
+	@Override
+	public boolean canChange() {
+		for (final Property<T, ?, ?> p : properties) {
+			if (p.canChange()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public PropertySet<T> clone() {
+		return new PropertySet<>(this);
+	}
+
+	@Override
+	public Object[] getResult() {
+		final Object[] res = new Object[properties.size()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = properties.get(i).getResult();
+		}
+		return res;
+	}
+
+	@Override
+	public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+		boolean mayChange = false;
+		for (final Property<T, ?, ?> p : properties) {
+			if (p.canChange()) {
+				p.stepDone(env, r, time, step);
+				mayChange |= p.canChange();
+			}
+		}
+		if (!mayChange) {
+			Simulation.stop(env);
+		}
+	}
+
+	@Override
+	public void initialized(final IEnvironment<T> env) {
+		for (final Property<T, ?, ?> p : properties) {
+			p.initialized(env);
+		}
+	}
+
+	@Override
+	public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+		for (final Property<T, ?, ?> p : properties) {
+			p.finished(env, time, step);
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import java.io.Serializable;
+
+/**
+ * Count, mean and sum of squared deviations of a stream of values, updated
+ * with Welford's algorithm. This class is not thread safe.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class RunningStatistics implements Serializable {
+
+	private static final long serialVersionUID = 4262296316409716386L;
+	private int n;
+	private double mean;
+	private double m2;
+
+	/**
+	 * @param x
+	 *            the value to add
+	 */
+	public void add(final double x) {
+		n++;
+		final double delta = x - mean;
+		mean += delta / n;
+		m2 += delta * (x - mean);
+	}
+
+	/**
+	 * @return the number of values added so far
+	 */
+	public int getCount() {
+		return n;
+	}
+
+	/**
+	 * @return the mean of the values added so far, NaN if there are none
+	 */
+	public double getMean() {
+		return n == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * @return the sample variance of the values added so far
+	 */
+	public double getVariance() {
+		return m2 / (n - 1);
+	}
+
+	/**
+	 * @return the sample standard deviation of the values added so far
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * Forgets all the values added so far.
+	 */
+	public void reset() {
+		n = 0;
+		mean = 0;
+		m2 = 0;
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A local, on-disk repository of run results. Results are stored in
+ * {@link CheckpointFile}s, one per experiment, named after a SHA-256 hash of
+ * everything that determines the result of each run: the content of the
+ * model, the serialized property, the maximum steps, the final time, the
+ * master seed and the warm-up, if any. An experiment whose key is already in
+ * the repository can start from the results stored there and simulate only
+ * the additional runs it needs, e.g. because it requires a smaller delta or
+ * alpha.
+ * 
+ * Files referenced by the model are not part of the key: changing them
+ * requires a new repository.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public final class SampleRepository {
+
+	private static final String EXTENSION = ".asmc";
+	private static final int HEX_RADIX = 16;
+	private static final int BYTE_MASK = 0xFF;
+	private static final int HIGH_NIBBLE = 4;
+	private final File dir;
+
+	/**
+	 * @param directory
+	 *            the directory where results are stored. It is created if it
+	 *            does not exist.
+	 * @throws IOException
+	 *             if the directory can not be created
+	 */
+	public SampleRepository(final File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		dir = directory;
+	}
+
+	/**
+	 * @param xmlFilePath
+	 *            Alchemist XML specification
+	 * @param p
+	 *            the property to verify
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 * @param masterSeed
+	 *            the master seed of the experiment
+	 * @param w
+	 *            the warm-up the runs branch from, or null
+	 * @return the file where the results of the experiment are stored. It may
+	 *         not exist yet.
+	 * @throws IOException
+	 *             if the model can not be read or the property can not be
+	 *             serialized
+	 */
+	public File getFile(final String xmlFilePath, final Property<?, ?, ?> p, final long steps, final double finalTime, final long masterSeed, final WarmUp w) throws IOException {
+		return new File(dir, computeKey(xmlFilePath, p, steps, finalTime, masterSeed, w) + EXTENSION);
+	}
+
+	/**
+	 * @param xmlFilePath
+	 *            Alchemist XML specification
+	 * @param p
+	 *            the property to verify
+	 * @param steps
+	 *            maximum length of the simulation in steps
+	 * @param finalTime
+	 *            maximum length of the simulation in simulated time units
+	 * @param masterSeed
+	 *            the master seed of the experiment
+	 * @param w
+	 *            the warm-up the runs branch from, or null
+	 * @return an hexadecimal hash identifying the experiment
+	 * @throws IOException
+	 *             if the model can not be read or the property can not be
+	 *             serialized
+	 */
+	public static String computeKey(final String xmlFilePath, final Property<?, ?, ?> p, final long steps, final double finalTime, final long masterSeed, final WarmUp w) throws IOException {
+		final MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		md.update(Files.readAllBytes(new File(xmlFilePath).toPath()));
+		final ByteArrayOutputStream prop = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(prop)) {
+			out.writeObject(p);
+			if (w != null) {
+				out.writeObject(w);
+			}
+		}
+		md.update(prop.toByteArray());
+		final ByteArrayOutputStream params = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(params)) {
+			out.writeLong(steps);
+			out.writeDouble(finalTime);
+			out.writeLong(masterSeed);
+		}
+		md.update(params.toByteArray());
+		final StringBuilder sb = new StringBuilder();
+		for (final byte b : md.digest()) {
+			sb.append(Character.forDigit((b & BYTE_MASK) >>> HIGH_NIBBLE, HEX_RADIX));
+			sb.append(Character.forDigit(b & (HEX_RADIX - 1), HEX_RADIX));
+		}
+		return sb.toString();
+	}
+
+}
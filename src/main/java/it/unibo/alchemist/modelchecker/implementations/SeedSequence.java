@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.external.cern.jet.random.engine.MersenneTwister;
+import it.unibo.alchemist.external.cern.jet.random.engine.RandomEngine;
+
+import java.io.Serializable;
+
+/**
+ * Derives the seed of each run of an experiment from a master seed and the
+ * index of the run only, SplitMix64 style. Run i always gets the same seed,
+ * no matter how many runs are executed before, after or concurrently with it,
+ * so that experiments can be split, parallelized and resumed without changing
+ * the sampled trajectories. Seeds are 64 bits wide, so collisions between
+ * the runs of an experiment are negligible even for billions of runs.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public final class SeedSequence implements Serializable {
+
+	private static final long serialVersionUID = -6795286698616393094L;
+	private static final long GAMMA = 0x9E3779B97F4A7C15L;
+	private static final long MUL1 = 0xBF58476D1CE4E5B9L;
+	private static final long MUL2 = 0x94D049BB133111EBL;
+	private static final int SHIFT1 = 30;
+	private static final int SHIFT2 = 27;
+	private static final int SHIFT3 = 31;
+	private final long master;
+	private final long mixedMaster;
+
+	/**
+	 * @param masterSeed
+	 *            the seed of the whole experiment
+	 */
+	public SeedSequence(final long masterSeed) {
+		master = masterSeed;
+		mixedMaster = mix(masterSeed);
+	}
+
+	/**
+	 * @return the seed of the whole experiment
+	 */
+	public long getMasterSeed() {
+		return master;
+	}
+
+	/**
+	 * @param run
+	 *            the index of the run
+	 * @return the seed of the run
+	 */
+	public long getSeed(final long run) {
+		return mix(mixedMaster + (run + 1) * GAMMA);
+	}
+
+	/**
+	 * @param run
+	 *            the index of the run
+	 * @return a new random engine, seeded with the seed of the run
+	 */
+	public RandomEngine getEngine(final long run) {
+		final RandomEngine res = new MersenneTwister();
+		res.setSeed(getSeed(run));
+		return res;
+	}
+
+	private static long mix(final long seed) {
+		long z = seed;
+		z = (z ^ (z >>> SHIFT1)) * MUL1;
+		z = (z ^ (z >>> SHIFT2)) * MUL2;
+		return z ^ (z >>> SHIFT3);
+	}
+
+}
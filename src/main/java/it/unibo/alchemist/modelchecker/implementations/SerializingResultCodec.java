@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.ResultCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Encodes results of any serializable type with Java serialization.
+ * 
+ * Decoding only instantiates the classes the codec allows: boxed primitives,
+ * strings, {@link BigInteger}, {@link BigDecimal} and arrays of them or of
+ * primitives, plus the classes passed to the constructor. Any other class in
+ * the stream makes decoding fail before it is instantiated, so that results
+ * read from a checkpoint or from a worker can not run arbitrary code.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public class SerializingResultCodec<D> implements ResultCodec<D> {
+
+	private static final long serialVersionUID = -4207113420848598781L;
+	private static final Class<?>[] DEFAULT_CLASSES = { Object.class, Number.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class, Double.class, String.class, BigInteger.class, BigDecimal.class };
+	private final Set<Class<?>> allowed = new HashSet<>(Arrays.asList(DEFAULT_CLASSES));
+
+	/**
+	 * @param classes
+	 *            the classes the results are made of, besides the ones allowed
+	 *            by default. Their serializable superclasses must be allowed as
+	 *            well.
+	 */
+	public SerializingResultCodec(final Class<?>... classes) {
+		for (final Class<?> c : classes) {
+			if (c == null) {
+				throw new IllegalArgumentException("Allowed classes can not be null.");
+			}
+			allowed.add(c);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public D decode(final byte[] b) {
+		try (ObjectInputStream in = new WhitelistInputStream(new ByteArrayInputStream(b))) {
+			return (D) in.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@Override
+	public byte[] encode(final D d) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(d);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Refuses to resolve the classes the codec does not allow.
+	 */
+	private final class WhitelistInputStream extends ObjectInputStream {
+
+		private WhitelistInputStream(final InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			final Class<?> c = super.resolveClass(desc);
+			Class<?> component = c;
+			while (component.isArray()) {
+				component = component.getComponentType();
+			}
+			if (component.isPrimitive() || allowed.contains(component)) {
+				return c;
+			}
+			throw new InvalidClassException(desc.getName(), "not allowed in results");
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException {
+			throw new InvalidClassException("Proxies are not allowed in results.");
+		}
+	}
+
+}
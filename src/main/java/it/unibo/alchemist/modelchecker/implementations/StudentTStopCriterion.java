@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.AlchemistASMC;
+import it.unibo.alchemist.modelchecker.interfaces.StopCriterion;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * The dynamic criterion built into {@link AlchemistASMC} as a stand-alone
+ * strategy: stops when the Student-t interval computed with
+ * {@link AlchemistASMC#computeDeltaDynamic(double, int, double)} is smaller
+ * than delta, provided that a minimum sample size has been reached. Boolean
+ * results are mapped to 1 (true) and 0 (false).
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type, either Boolean or a Number
+ */
+public class StudentTStopCriterion<D> implements StopCriterion<D> {
+
+	private static final long serialVersionUID = 3563640958981787131L;
+	private final RunningStatistics stats = new RunningStatistics();
+	private final double d;
+	private final double a;
+	private final int minN;
+
+	/**
+	 * @param delta
+	 *            approximation
+	 * @param alpha
+	 *            confidence
+	 * @param min
+	 *            minimum sample size
+	 */
+	public StudentTStopCriterion(final double delta, final double alpha, final int min) {
+		d = delta;
+		a = alpha;
+		minN = Math.max(2, min);
+	}
+
+	@Override
+	public synchronized void update(final D result) {
+		if (result instanceof Boolean) {
+			stats.add(((Boolean) result) ? 1 : 0);
+		} else {
+			stats.add(((Number) result).doubleValue());
+		}
+	}
+
+	@Override
+	public synchronized boolean isSatisfied() {
+		final int n = stats.getCount();
+		return n >= minN && AlchemistASMC.computeDeltaDynamic(stats.getStandardDeviation(), n, a) < d;
+	}
+
+	@Override
+	public synchronized double estimateRemainingSamples() {
+		final int n = stats.getCount();
+		if (n < minN) {
+			return minN - n;
+		}
+		final double t = new TDistribution(n - 1).inverseCumulativeProbability(1 - a / 2);
+		return Math.ceil(Math.pow(2 * t * stats.getStandardDeviation() / d, 2)) - n;
+	}
+
+	@Override
+	public synchronized void reset() {
+		stats.reset();
+	}
+
+}
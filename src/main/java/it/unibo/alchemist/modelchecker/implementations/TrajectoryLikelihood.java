@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+/**
+ * Logarithm of the likelihood ratio of a trajectory of a continuous time
+ * Markov chain, observed up to a horizon, between two sets of rates. Every
+ * sojourn contributes -(A - B) * dt, where A and B are the total rates of the
+ * two models, and every event contributes log(a(r) / b(r)). A trajectory
+ * whose observation ends at the horizon, with no event there, ends with a
+ * sojourn which is censored: it contributes the ratio of the survival
+ * probabilities, which is again -(A - B) times its length.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+final class TrajectoryLikelihood {
+
+	private final double horizon;
+	private double rateDiff;
+	private double lastTime;
+	private double logRatio;
+	private boolean closed;
+
+	/**
+	 * @param end
+	 *            the time the observation ends at, possibly infinite
+	 * @param start
+	 *            the time the trajectory starts at
+	 * @param diff
+	 *            A - B in the initial state
+	 */
+	TrajectoryLikelihood(final double end, final double start, final double diff) {
+		horizon = end;
+		lastTime = start;
+		rateDiff = diff;
+	}
+
+	/**
+	 * Accounts for an event. Events past the horizon are not observed: the
+	 * first one closes the trajectory at the horizon.
+	 * 
+	 * @param time
+	 *            the time of the event
+	 * @param eventLogRatio
+	 *            log(a(r) / b(r)) of the reaction firing
+	 * @param diff
+	 *            A - B in the state following the event
+	 */
+	void event(final double time, final double eventLogRatio, final double diff) {
+		if (closed) {
+			return;
+		}
+		if (time > horizon) {
+			censor();
+			return;
+		}
+		logRatio += eventLogRatio - rateDiff * (time - lastTime);
+		lastTime = time;
+		rateDiff = diff;
+	}
+
+	/**
+	 * Closes the trajectory at the horizon, with a censored sojourn. Has no
+	 * effect if the trajectory is already closed or the horizon is infinite.
+	 */
+	void censor() {
+		if (!closed && !Double.isInfinite(horizon)) {
+			logRatio -= rateDiff * (horizon - lastTime);
+			lastTime = horizon;
+			closed = true;
+		}
+	}
+
+	/**
+	 * @return the logarithm of the likelihood ratio of the trajectory so far
+	 */
+	double getLogRatio() {
+		return logRatio;
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import java.io.Serializable;
+
+/**
+ * Describes the warm-up prefix shared by the runs of an experiment: the model
+ * is simulated up to the given steps or time a few times, and every run
+ * branches from one of the resulting snapshots instead of starting from the
+ * initial state. Runs branching from the same prefix are not independent, so
+ * the number of prefixes should be as large as the warm-up cost allows.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public final class WarmUp implements Serializable {
+
+	private static final long serialVersionUID = 2461917460307981557L;
+	private final long steps;
+	private final double time;
+	private final int prefixes;
+
+	/**
+	 * @param maxSteps
+	 *            maximum length of the warm-up in steps
+	 * @param maxTime
+	 *            maximum length of the warm-up in simulated time units
+	 * @param count
+	 *            number of independent prefixes to simulate. Run i branches
+	 *            from prefix i modulo count.
+	 */
+	public WarmUp(final long maxSteps, final double maxTime, final int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("At least one prefix is required.");
+		}
+		steps = maxSteps;
+		time = maxTime;
+		prefixes = count;
+	}
+
+	/**
+	 * @return maximum length of the warm-up in steps
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * @return maximum length of the warm-up in simulated time units
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * @return number of independent prefixes
+	 */
+	public int getPrefixes() {
+		return prefixes;
+	}
+
+}
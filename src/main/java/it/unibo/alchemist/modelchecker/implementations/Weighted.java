@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import java.io.Serializable;
+
+/**
+ * The result of a run simulated with importance sampling, along with the
+ * likelihood ratio of its trajectory.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public final class Weighted<D> implements Serializable {
+
+	private static final long serialVersionUID = -1538203926004781153L;
+	private final D value;
+	private final double weight;
+
+	/**
+	 * @param v
+	 *            the result of the run
+	 * @param w
+	 *            the likelihood ratio of the trajectory
+	 */
+	public Weighted(final D v, final double w) {
+		value = v;
+		weight = w;
+	}
+
+	/**
+	 * @return the result of the run
+	 */
+	public D getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the likelihood ratio of the trajectory
+	 */
+	public double getWeight() {
+		return weight;
+	}
+
+	@Override
+	public String toString() {
+		return value + "*" + weight;
+	}
+
+}
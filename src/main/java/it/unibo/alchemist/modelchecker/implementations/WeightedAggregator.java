@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.modelchecker.interfaces.IncrementalPropertyAggregatorVariance;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+
+import java.util.List;
+
+/**
+ * Aggregates the weighted results of runs simulated with importance
+ * sampling. The result is the mean of the results multiplied by their
+ * likelihood ratio, which is an unbiased estimate of the mean in the original
+ * model, and the variance is the one of the weighted results. The effective
+ * sample size measures how many of the runs actually contribute to the
+ * estimate.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public abstract class WeightedAggregator<D> implements IncrementalPropertyAggregatorVariance<Double, Weighted<D>> {
+
+	private static final long serialVersionUID = 8030117316580446125L;
+	private final RunningStatistics stats = new RunningStatistics();
+	private double sumW;
+	private double sumW2;
+
+	@Override
+	public Double aggregate(final List<? extends Property<?, ?, Weighted<D>>> pList) {
+		return scan(pList).getMean();
+	}
+
+	@Override
+	public double getS(final List<? extends Property<?, ?, Weighted<D>>> pList) {
+		return scan(pList).getStandardDeviation();
+	}
+
+	@Override
+	public synchronized void add(final Weighted<D> d) {
+		final double w = d.getWeight();
+		stats.add(w * value(d.getValue()));
+		sumW += w;
+		sumW2 += w * w;
+	}
+
+	@Override
+	public synchronized Double aggregate() {
+		return stats.getMean();
+	}
+
+	@Override
+	public synchronized double getS() {
+		return stats.getStandardDeviation();
+	}
+
+	@Override
+	public synchronized int getCount() {
+		return stats.getCount();
+	}
+
+	/**
+	 * @return the effective sample size of the data added so far, (sum of
+	 *         w)^2 / sum of w^2
+	 */
+	public synchronized double getEffectiveSampleSize() {
+		return sumW2 == 0 ? 0 : sumW * sumW / sumW2;
+	}
+
+	@Override
+	public synchronized void reset() {
+		stats.reset();
+		sumW = 0;
+		sumW2 = 0;
+	}
+
+	/**
+	 * @param d
+	 *            the result of a run
+	 * @return the result as a number
+	 */
+	protected abstract double value(D d);
+
+	private RunningStatistics scan(final List<? extends Property<?, ?, Weighted<D>>> pList) {
+		final RunningStatistics res = new RunningStatistics();
+		synchronized (pList) {
+			for (final Property<?, ?, Weighted<D>> p : pList) {
+				final Weighted<D> r = p.getResult();
+				res.add(r.getWeight() * value(r.getValue()));
+			}
+		}
+		return res;
+	}
+
+}
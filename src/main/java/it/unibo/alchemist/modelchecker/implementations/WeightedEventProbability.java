@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+/**
+ * Importance sampling counterpart of {@link EventProbability}: estimates the
+ * probability of a boolean property in the original model from runs of the
+ * biased one.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class WeightedEventProbability extends WeightedAggregator<Boolean> {
+
+	private static final long serialVersionUID = -4409617785361094311L;
+
+	@Override
+	protected double value(final Boolean d) {
+		return d ? 1 : 0;
+	}
+
+}
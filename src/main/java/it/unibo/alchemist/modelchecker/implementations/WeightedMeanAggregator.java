@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+/**
+ * Importance sampling counterpart of {@link MeanAggregator}: estimates the
+ * mean of a numeric property in the original model from runs of the biased
+ * one.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <D>
+ *            Property result type
+ */
+public class WeightedMeanAggregator<D extends Number> extends WeightedAggregator<D> {
+
+	private static final long serialVersionUID = 6920334406567431102L;
+
+	@Override
+	protected double value(final D d) {
+		return d.doubleValue();
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.INode;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.interfaces.Observation;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.modelchecker.interfaces.ReactionBias;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Wraps a property evaluated on a model with biased rates, and computes the
+ * likelihood ratio of the trajectory with respect to the original model.
+ * When reaction r fires after a sojourn of length dt, the ratio is multiplied
+ * by a(r) / b(r) * exp(-(A - B) * dt), where a and b are the original and
+ * biased rates before the reaction and A and B are their sums over all the
+ * reactions. Computing the sums requires a scan of all the reactions at every
+ * step. Runs are assumed to start at time 0.
+ * 
+ * Runs limited in time are observed up to the horizon: events past it are
+ * ignored, and a run ending before the horizon because no reaction can fire
+ * any more is closed with the survival term exp(-(A - B) * (horizon - t)) of
+ * its last sojourn. Runs stopped earlier, at the step limit or by the wrapped
+ * property, are weighted with the ratio at the time they stopped at. The
+ * horizon must be the final time the runs are executed with (see
+ * {@link #setHorizon(double)}).
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ * @param <K>
+ *            Observation result type
+ * @param <D>
+ *            Property result type
+ */
+public final class WeightedProperty<T, K, D> implements Property<T, K, Weighted<D>> {
+
+	private static final long serialVersionUID = 5112046829870377012L;
+	private final Property<T, K, D> inner;
+	private final ReactionBias<T> bias;
+	private transient Map<IReaction<T>, Double> logRatios;
+	private transient TrajectoryLikelihood likelihood;
+	private transient double biasedRate;
+	private double horizon = Double.POSITIVE_INFINITY;
+
+	/**
+	 * @param p
+	 *            the property to verify
+	 * @param b
+	 *            the relation between the simulated model and the original one
+	 */
+	public WeightedProperty(final Property<T, K, D> p, final ReactionBias<T> b) {
+		inner = p;
+		bias = b;
+	}
+
+	/**
+	 * Sets the final time the runs are executed with. Must be called before
+	 * the property is cloned for the runs.
+	 * 
+	 * @param finalTime
+	 *            maximum length of the runs in simulated time units, which is
+	 *            the horizon of the observation
+	 */
+	public void setHorizon(final double finalTime) {
+		horizon = finalTime;
+	}
+
+	@Override
+	public void addObservation(final Observation<K, T> obs) {
+		inner.addObservation(obs);
+	}
+
+	@Override
+	public boolean canChange() {
+		return inner.canChange();
+	}
+
+	@Override
+	public WeightedProperty<T, K, D> clone() {
+		final WeightedProperty<T, K, D> res = new WeightedProperty<>(inner.clone(), bias);
+		res.setHorizon(horizon);
+		return res;
+	}
+
+	@Override
+	public Weighted<D> getResult() {
+		return new Weighted<>(inner.getResult(), Math.exp(likelihood.getLogRatio()));
+	}
+
+	@Override
+	public void initialized(final IEnvironment<T> env) {
+		logRatios = new IdentityHashMap<>();
+		likelihood = new TrajectoryLikelihood(horizon, 0, updateRates(env));
+		inner.initialized(env);
+	}
+
+	@Override
+	public void stepDone(final IEnvironment<T> env, final IReaction<T> r, final ITime time, final long step) {
+		final Double logRatio = logRatios.get(r);
+		likelihood.event(time.toDouble(), logRatio == null ? 0 : logRatio, updateRates(env));
+		inner.stepDone(env, r, time, step);
+	}
+
+	@Override
+	public void finished(final IEnvironment<T> env, final ITime time, final long step) {
+		if (biasedRate == 0) {
+			likelihood.censor();
+		}
+		inner.finished(env, time, step);
+	}
+
+	/*
+	 * Records the ratios of the reactions in the current state and B, and
+	 * returns A - B.
+	 */
+	private double updateRates(final IEnvironment<T> env) {
+		logRatios.clear();
+		biasedRate = 0;
+		double diff = 0;
+		for (final INode<T> n : env) {
+			for (final IReaction<T> r : n.getReactions()) {
+				final double b = r.getRate();
+				final double a = bias.getOriginalRate(r);
+				diff += a - b;
+				biasedRate += b;
+				if (b > 0) {
+					logRatios.put(r, Math.log(a / b));
+				}
+			}
+		}
+		return diff;
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.interfaces;
+
+/**
+ * A {@link PropertyAggregator} which keeps running sufficient statistics, so
+ * that each finished run can be pushed into it once and the aggregated value
+ * can be read in constant time.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <Data>
+ *            Property result type
+ * @param <Result>
+ *            Final result type
+ */
+public interface IncrementalPropertyAggregator<Result, Data> extends PropertyAggregator<Result, Data> {
+
+	/**
+	 * Pushes the result of a single run into the running statistics.
+	 * 
+	 * @param d
+	 *            the result of the run
+	 */
+	void add(Data d);
+
+	/**
+	 * @return the aggregation of all the data added so far
+	 */
+	Result aggregate();
+
+	/**
+	 * @return the number of results added so far
+	 */
+	int getCount();
+
+	/**
+	 * Forgets all the data added so far.
+	 */
+	void reset();
+
+}
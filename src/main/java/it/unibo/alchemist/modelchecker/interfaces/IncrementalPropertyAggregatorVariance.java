@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.interfaces;
+
+/**
+ * An {@link IncrementalPropertyAggregator} which can also provide the sample
+ * standard deviation of the data added so far in constant time.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <Data>
+ *            Property result type
+ * @param <Result>
+ *            Final result type
+ */
+public interface IncrementalPropertyAggregatorVariance<Result, Data> extends IncrementalPropertyAggregator<Result, Data>, PropertyAggregatorVariance<Result, Data> {
+
+	/**
+	 * @return the variance function s (see manual) of the data added so far
+	 */
+	double getS();
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.interfaces;
+
+import it.unibo.alchemist.model.interfaces.IReaction;
+
+import java.io.Serializable;
+
+/**
+ * Relates the reactions of a model with biased rates, which is the one
+ * actually simulated for importance sampling, to the original model.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <T>
+ *            Concentration type
+ */
+public interface ReactionBias<T> extends Serializable {
+
+	/**
+	 * @param r
+	 *            a reaction of the biased model, in its current state
+	 * @return the rate the reaction would have in the original model, in the
+	 *         same state
+	 */
+	double getOriginalRate(IReaction<T> r);
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.interfaces;
+
+import java.io.Serializable;
+
+/**
+ * Converts the results of single runs to and from bytes, in order to store
+ * them outside of the JVM.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <Data>
+ *            Property result type
+ */
+public interface ResultCodec<Data> extends Serializable {
+
+	/**
+	 * @param b
+	 *            the encoded result
+	 * @return the result
+	 */
+	Data decode(byte[] b);
+
+	/**
+	 * @param d
+	 *            the result to encode
+	 * @return the encoded result
+	 */
+	byte[] encode(Data d);
+
+}
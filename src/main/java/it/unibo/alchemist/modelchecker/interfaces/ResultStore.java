@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.interfaces;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Stores the results of the runs of an experiment, once extracted from their
+ * properties, in a representation as compact as their type allows.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <Data>
+ *            Property result type
+ */
+public interface ResultStore<Data> extends Serializable {
+
+	/**
+	 * @param d
+	 *            the result to append
+	 */
+	void add(Data d);
+
+	/**
+	 * Removes all the results.
+	 */
+	void clear();
+
+	/**
+	 * @param i
+	 *            the position of the result, in insertion order
+	 * @return the result
+	 */
+	Data get(int i);
+
+	/**
+	 * @return the number of stored results
+	 */
+	int size();
+
+	/**
+	 * @return a read-only view of the stored results as properties, for the
+	 *         aggregators which work on lists of properties
+	 */
+	List<Property<?, ?, Data>> asPropertyList();
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.interfaces;
+
+import java.io.Serializable;
+
+/**
+ * A strategy deciding when an experiment can stop, alternative to the stop
+ * condition built into each model checker. It is fed the result of every
+ * accepted run, in completion order.
+ * 
+ * @author Danilo Pianini
+ * 
+ * @param <Data>
+ *            Property result type
+ */
+public interface StopCriterion<Data> extends Serializable {
+
+	/**
+	 * Pushes the result of a single run.
+	 * 
+	 * @param d
+	 *            the result of the run
+	 */
+	void update(Data d);
+
+	/**
+	 * @return true when there's no need to execute more simulations
+	 */
+	boolean isSatisfied();
+
+	/**
+	 * @return the estimated number of further runs required before this
+	 *         criterion is satisfied, or {@link Double#POSITIVE_INFINITY} if no
+	 *         estimate is available
+	 */
+	double estimateRemainingSamples();
+
+	/**
+	 * Forgets all the data pushed so far.
+	 */
+	void reset();
+
+}
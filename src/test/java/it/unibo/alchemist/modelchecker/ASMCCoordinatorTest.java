@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import it.unibo.alchemist.modelchecker.implementations.BooleanResultCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs a coordinator on the loopback interface against a worker speaking the
+ * protocol by hand.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class ASMCCoordinatorTest {
+
+	private static final byte[] SECRET = "correct horse battery staple".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] ENVIRONMENT = { 1, 2, 3 };
+	private static final long SEED = 42;
+	private static final long STEPS = 1000;
+	private static final double TIME = 10;
+	private static final int RUNS = 8;
+	private static final long TIMEOUT = 200;
+	private static final long TEST_TIMEOUT = 10000;
+	private final BooleanResultCodec codec = new BooleanResultCodec();
+	private final Map<Integer, Boolean> results = new ConcurrentHashMap<>();
+	private ASMCCoordinator coordinator;
+
+	/**
+	 * Starts a coordinator and an experiment.
+	 * 
+	 * @throws IOException
+	 *             if the coordinator can not be started
+	 */
+	@Before
+	public void setUp() throws IOException {
+		coordinator = new ASMCCoordinator(0, SECRET);
+		coordinator.setIdleTimeout(TIMEOUT);
+		coordinator.start(ENVIRONMENT, null, codec, SEED, STEPS, TIME, new ASMCCoordinator.ResultHandler<Boolean>() {
+			@Override
+			public void handle(final int run, final Boolean result) {
+				results.put(run, result);
+			}
+		});
+	}
+
+	/**
+	 * Stops the coordinator.
+	 * 
+	 * @throws IOException
+	 *             if the coordinator can not be stopped
+	 */
+	@After
+	public void tearDown() throws IOException {
+		coordinator.close();
+	}
+
+	/**
+	 * An authenticated worker receives the experiment and the runs, and its
+	 * results reach the handler.
+	 * 
+	 * @throws IOException
+	 *             if the communication fails
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testExperiment() throws IOException, InterruptedException {
+		for (int run = 0; run < RUNS; run++) {
+			coordinator.submit(run);
+		}
+		coordinator.flush();
+		try (Socket s = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			join(in, out);
+			for (int run = 0; run < RUNS; run++) {
+				final byte[] data = codec.encode(run % 2 == 0);
+				out.writeByte(ASMCCoordinator.RESULT);
+				out.writeInt(run);
+				out.writeInt(data.length);
+				out.write(data);
+			}
+			out.flush();
+			assertTrue(coordinator.awaitOutstanding());
+			assertEquals(RUNS, results.size());
+			for (int run = 0; run < RUNS; run++) {
+				assertEquals(run % 2 == 0, results.get(run));
+			}
+			coordinator.finish();
+			assertEquals(ASMCCoordinator.END, in.readByte());
+		}
+	}
+
+	/**
+	 * A worker sending a result which can not be decoded is dropped instead of
+	 * being waited for forever, and its runs are handed out again to the next
+	 * worker.
+	 * 
+	 * @throws IOException
+	 *             if the communication fails
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test(timeout = TEST_TIMEOUT)
+	public void testMalformedResult() throws IOException, InterruptedException {
+		for (int run = 0; run < RUNS; run++) {
+			coordinator.submit(run);
+		}
+		coordinator.flush();
+		try (Socket s = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			join(in, out);
+			out.writeByte(ASMCCoordinator.RESULT);
+			out.writeInt(0);
+			out.writeInt(0);
+			out.flush();
+			assertEquals(-1, in.read());
+			assertFalse(coordinator.awaitOutstanding());
+			assertTrue(coordinator.isAbandoned());
+			assertEquals(0, coordinator.getWorkerCount());
+			assertTrue(results.isEmpty());
+		}
+		try (Socket s = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+			join(new DataInputStream(new BufferedInputStream(s.getInputStream())), new DataOutputStream(new BufferedOutputStream(s.getOutputStream())));
+		}
+	}
+
+	/**
+	 * A worker which does not know the secret is turned away.
+	 * 
+	 * @throws IOException
+	 *             if the connection can not be opened
+	 */
+	@Test
+	public void testWrongSecret() throws IOException {
+		coordinator.submit(0);
+		coordinator.flush();
+		try (Socket s = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort())) {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			try {
+				ASMCWorker.authenticate(in, out, "wrong".getBytes(StandardCharsets.UTF_8));
+				fail("The coordinator accepted a wrong secret.");
+			} catch (IOException e) {
+				assertEquals(0, coordinator.getWorkerCount());
+			}
+		}
+	}
+
+	/**
+	 * Waiting for the results gives up if no worker connects.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testIdleTimeout() throws InterruptedException {
+		coordinator.submit(0);
+		coordinator.flush();
+		assertFalse(coordinator.awaitOutstanding());
+		assertTrue(results.isEmpty());
+	}
+
+	/*
+	 * Authenticates, reads the description of the experiment and the range of
+	 * all the runs.
+	 */
+	private static void join(final DataInputStream in, final DataOutputStream out) throws IOException {
+		ASMCWorker.authenticate(in, out, SECRET);
+		final byte[] env = new byte[in.readInt()];
+		in.readFully(env);
+		assertArrayEquals(ENVIRONMENT, env);
+		in.readFully(new byte[in.readInt()]);
+		assertEquals(SEED, in.readLong());
+		assertEquals(STEPS, in.readLong());
+		assertEquals(TIME, in.readDouble(), 0);
+		assertEquals(ASMCCoordinator.RANGE, in.readByte());
+		assertEquals(0, in.readInt());
+		assertEquals(RUNS, in.readInt());
+	}
+
+}
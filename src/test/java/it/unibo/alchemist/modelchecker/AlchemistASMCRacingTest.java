@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class AlchemistASMCRacingTest {
+
+	private static final double EPS = 1e-12;
+
+	/**
+	 * h^2 matches the values worked out by hand.
+	 */
+	@Test
+	public void testH2() {
+		/*
+		 * k = 2, alpha = 0.05, n0 = 3: eta = (0.1^-1 - 1) / 2 = 4.5
+		 */
+		assertEquals(18, AlchemistASMCRacing.h2(0.05, 2, 3), EPS);
+		/*
+		 * k = 3, alpha = 0.1, n0 = 5: eta = (0.1^-0.5 - 1) / 2
+		 */
+		assertEquals(8 * (Math.sqrt(10) - 1) / 2, AlchemistASMCRacing.h2(0.1, 3, 5), EPS);
+	}
+
+	/**
+	 * More configurations or a smaller alpha widen the tolerance, a longer
+	 * first stage narrows it.
+	 */
+	@Test
+	public void testH2Monotonicity() {
+		assertTrue(AlchemistASMCRacing.h2(0.05, 5, 10) > AlchemistASMCRacing.h2(0.05, 2, 10));
+		assertTrue(AlchemistASMCRacing.h2(0.01, 2, 10) > AlchemistASMCRacing.h2(0.05, 2, 10));
+		assertTrue(AlchemistASMCRacing.h2(0.05, 2, 20) < AlchemistASMCRacing.h2(0.05, 2, 10));
+	}
+
+	/**
+	 * The tolerance shrinks as 1 / r and vanishes from round h^2 s^2 /
+	 * delta^2 on.
+	 */
+	@Test
+	public void testTolerance() {
+		final double delta = 0.5;
+		final double h2 = 18;
+		final double s2 = 1;
+		/*
+		 * h^2 s^2 / delta^2 = 72
+		 */
+		assertEquals(delta / 2 * 71, AlchemistASMCRacing.tolerance(delta, h2, s2, 1), EPS);
+		assertEquals(delta / 72 * 36, AlchemistASMCRacing.tolerance(delta, h2, s2, 36), EPS);
+		assertEquals(0, AlchemistASMCRacing.tolerance(delta, h2, s2, 72), EPS);
+		assertEquals(0, AlchemistASMCRacing.tolerance(delta, h2, s2, 100), EPS);
+	}
+
+	/**
+	 * A race needs at least two configurations.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSingleConfiguration() {
+		new AlchemistASMCRacing<Object>(null, 0.1, 0.05, 2, true).execute(Collections.singletonList("model.xml"), 1, 1);
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import it.unibo.alchemist.modelchecker.implementations.EventProbability;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class AlchemistASMCSPRTTest {
+
+	private static final double THETA = 0.5;
+	private static final double DELTA = 0.1;
+	private static final double ERROR = 0.05;
+	/*
+	 * log(0.05 / 0.95) / log(0.4 / 0.6) = 7.26: the eighth success in a row
+	 * crosses the boundary accepting P(p) >= theta.
+	 */
+	private static final int SUCCESSES_TO_ACCEPT = 8;
+	private static final long STEPS = 100;
+	private static final double TIME = 10;
+
+	private static AlchemistASMCSPRT<Object> sprt(final EventProbability counter) {
+		return new AlchemistASMCSPRT<>(THETA, DELTA, ERROR, ERROR, null, counter);
+	}
+
+	/**
+	 * A run of successes crosses the boundary of H0 after the expected number
+	 * of runs.
+	 */
+	@Test
+	public void testAcceptH0() {
+		final EventProbability counter = new EventProbability();
+		final AlchemistASMCSPRT<Object> test = sprt(counter);
+		for (int i = 0; i < SUCCESSES_TO_ACCEPT - 1; i++) {
+			counter.add(true);
+			assertFalse(test.stopCondition());
+		}
+		counter.add(true);
+		assertTrue(test.stopCondition());
+		assertEquals(Boolean.TRUE, test.decide(false));
+	}
+
+	/**
+	 * A run of failures crosses the boundary of H1 after as many runs.
+	 */
+	@Test
+	public void testAcceptH1() {
+		final EventProbability counter = new EventProbability();
+		final AlchemistASMCSPRT<Object> test = sprt(counter);
+		for (int i = 0; i < SUCCESSES_TO_ACCEPT; i++) {
+			counter.add(false);
+		}
+		assertEquals(Boolean.FALSE, test.decide(false));
+	}
+
+	/**
+	 * Within the continuation region the test is undecided, unless it is
+	 * truncated, in which case the estimate is compared with theta.
+	 */
+	@Test
+	public void testTruncation() {
+		final EventProbability counter = new EventProbability();
+		final AlchemistASMCSPRT<Object> test = sprt(counter);
+		counter.add(true);
+		counter.add(true);
+		counter.add(false);
+		assertNull(test.decide(false));
+		assertEquals(Boolean.TRUE, test.decide(true));
+		counter.add(false);
+		counter.add(false);
+		assertEquals(Boolean.FALSE, test.decide(true));
+	}
+
+	/**
+	 * The maximum sample size truncates the test.
+	 */
+	@Test
+	public void testMaxN() {
+		final EventProbability counter = new EventProbability();
+		final AlchemistASMCSPRT<Object> test = sprt(counter);
+		for (int i = 0; i < test.getMaxN(); i++) {
+			counter.add(i % 2 == 0);
+		}
+		assertTrue(test.stopCondition());
+	}
+
+	/**
+	 * The outcome is derived from the current counts, so it does not survive
+	 * a reset of the aggregator between experiments.
+	 */
+	@Test
+	public void testReset() {
+		final EventProbability counter = new EventProbability();
+		final AlchemistASMCSPRT<Object> test = sprt(counter);
+		for (int i = 0; i < SUCCESSES_TO_ACCEPT; i++) {
+			counter.add(true);
+		}
+		assertTrue(test.stopCondition());
+		counter.reset();
+		assertFalse(test.stopCondition());
+	}
+
+	/**
+	 * Without runs, there is nothing to decide.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testNoRuns() {
+		sprt(new EventProbability()).decide(true);
+	}
+
+	/**
+	 * Folding late samples could flip a decision already taken, so the test
+	 * refuses to start with that policy.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testFoldRejected() {
+		final AlchemistASMCSPRT<Object> test = sprt(new EventProbability());
+		test.setLateSamplePolicy(AlchemistASMC.LateSamplePolicy.FOLD);
+		test.execute("unused.xml", STEPS, TIME);
+	}
+
+}
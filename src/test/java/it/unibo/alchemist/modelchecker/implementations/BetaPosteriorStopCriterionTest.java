@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.math3.distribution.BetaDistribution;
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class BetaPosteriorStopCriterionTest {
+
+	private static final double DELTA = 0.05;
+	private static final double COVERAGE = 0.95;
+	private static final double EPS = 1e-4;
+	private static final int PAIRS = 300;
+
+	private static BetaPosteriorStopCriterion feed(final int successes, final int failures) {
+		final BetaPosteriorStopCriterion c = new BetaPosteriorStopCriterion(DELTA, COVERAGE);
+		for (int i = 0; i < successes; i++) {
+			c.update(true);
+		}
+		for (int i = 0; i < failures; i++) {
+			c.update(false);
+		}
+		return c;
+	}
+
+	/**
+	 * The posterior mean is the one of the updated Beta distribution.
+	 */
+	@Test
+	public void testPosteriorMean() {
+		assertEquals(8d / 12, feed(7, 3).getPosteriorMean(), 0);
+	}
+
+	/**
+	 * The interval of a symmetric posterior is the central one.
+	 */
+	@Test
+	public void testSymmetric() {
+		final double[] hpd = feed(10, 10).getHPDInterval();
+		final BetaDistribution posterior = new BetaDistribution(11, 11);
+		assertEquals(posterior.inverseCumulativeProbability((1 - COVERAGE) / 2), hpd[0], EPS);
+		assertEquals(posterior.inverseCumulativeProbability((1 + COVERAGE) / 2), hpd[1], EPS);
+	}
+
+	/**
+	 * The interval of a skewed posterior has the requested probability, and
+	 * the same density at both ends.
+	 */
+	@Test
+	public void testSkewed() {
+		final double[] hpd = feed(3, 30).getHPDInterval();
+		final BetaDistribution posterior = new BetaDistribution(4, 31);
+		assertEquals(COVERAGE, posterior.cumulativeProbability(hpd[1]) - posterior.cumulativeProbability(hpd[0]), EPS);
+		assertEquals(1, posterior.density(hpd[0]) / posterior.density(hpd[1]), 0.01);
+	}
+
+	/**
+	 * The criterion is satisfied once the interval is narrower than 2 * delta,
+	 * and reset forgets the results.
+	 */
+	@Test
+	public void testStop() {
+		final BetaPosteriorStopCriterion c = feed(10, 10);
+		assertFalse(c.isSatisfied());
+		assertTrue(c.estimateRemainingSamples() > 0);
+		for (int i = 0; i < PAIRS; i++) {
+			c.update(true);
+			c.update(false);
+		}
+		assertTrue(c.isSatisfied());
+		c.reset();
+		assertFalse(c.isSatisfied());
+		assertEquals(0.5, c.getPosteriorMean(), 0);
+	}
+
+	/**
+	 * The prior parameters must be positive.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPrior() {
+		new BetaPosteriorStopCriterion(DELTA, COVERAGE, 0, 1);
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class BooleanResultCodecTest {
+
+	/**
+	 * Booleans take a single byte.
+	 */
+	@Test
+	public void testBoolean() {
+		final BooleanResultCodec codec = new BooleanResultCodec();
+		assertEquals(1, codec.encode(true).length);
+		assertEquals(true, codec.decode(codec.encode(true)));
+		assertEquals(false, codec.decode(codec.encode(false)));
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class BooleanResultStoreTest {
+
+	private static final int MANY = 1000;
+	private static final int PERIOD = 3;
+
+	/**
+	 * Bits are read back in insertion order, across word boundaries and
+	 * growth, and counted.
+	 */
+	@Test
+	public void testAddGet() {
+		final BooleanResultStore store = new BooleanResultStore();
+		int expected = 0;
+		for (int i = 0; i < MANY; i++) {
+			final boolean b = i % PERIOD == 0;
+			store.add(b);
+			expected += b ? 1 : 0;
+		}
+		assertEquals(MANY, store.size());
+		for (int i = 0; i < MANY; i++) {
+			assertEquals(i % PERIOD == 0, store.get(i));
+		}
+		assertEquals(expected, store.countTrue());
+		assertEquals(Boolean.TRUE, store.asPropertyList().get(PERIOD).getResult());
+	}
+
+	/**
+	 * Clearing resets the stored bits.
+	 */
+	@Test
+	public void testClear() {
+		final BooleanResultStore store = new BooleanResultStore();
+		for (int i = 0; i < MANY; i++) {
+			store.add(true);
+		}
+		store.clear();
+		assertEquals(0, store.countTrue());
+		store.add(false);
+		assertEquals(Boolean.FALSE, store.get(0));
+		assertEquals(0, store.countTrue());
+	}
+
+	/**
+	 * Reading past the end fails.
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfBounds() {
+		new BooleanResultStore().get(0);
+	}
+
+}
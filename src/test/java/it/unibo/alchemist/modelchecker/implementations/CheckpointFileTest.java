@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class CheckpointFileTest {
+
+	private static final long SEED = 0x0123456789ABCDEFL;
+	private static final int RUNS = 1000;
+	/*
+	 * Layout of the file: a 64 bytes header, then records made of the run
+	 * index plus one, the length of the result and the result itself.
+	 */
+	private static final int HEADER = 64;
+	private static final int BOOLEAN_RECORD = 9;
+
+	/**
+	 * Temporary directory for the checkpoints.
+	 */
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * The results appended are read back, along with the seed, and the
+	 * checkpoint can be appended to after reopening it.
+	 * 
+	 * @throws IOException
+	 *             if the checkpoint can not be written
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		final File f = folder.newFile();
+		try (CheckpointFile<Double> cp = CheckpointFile.create(f, new NumericResultCodec<Double>(), SEED)) {
+			for (int run = RUNS - 1; run >= 0; run--) {
+				cp.append(run, run / 2d);
+			}
+		}
+		try (CheckpointFile<Double> cp = CheckpointFile.open(f, new NumericResultCodec<Double>())) {
+			assertEquals(SEED, cp.getMasterSeed());
+			assertEquals(RUNS, cp.getRecoveredResults().size());
+			cp.append(RUNS, -1d);
+		}
+		try (CheckpointFile<Double> cp = CheckpointFile.open(f, new NumericResultCodec<Double>())) {
+			final Map<Integer, Double> res = cp.getRecoveredResults();
+			assertEquals(RUNS + 1, res.size());
+			for (int run = 0; run < RUNS; run++) {
+				assertEquals(run / 2d, res.get(run), 0);
+			}
+			assertEquals(-1d, res.get(RUNS), 0);
+		}
+	}
+
+	/**
+	 * A record whose index was never written, as after a crash in the middle
+	 * of an append, is not read back, and is overwritten by the next append.
+	 * 
+	 * @throws IOException
+	 *             if the checkpoint can not be written
+	 */
+	@Test
+	public void testTornTail() throws IOException {
+		final File f = folder.newFile();
+		try (CheckpointFile<Boolean> cp = CheckpointFile.create(f, new BooleanResultCodec(), SEED)) {
+			cp.append(0, true);
+			cp.append(1, false);
+			cp.append(2, true);
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			final long torn = HEADER + 3 * BOOLEAN_RECORD;
+			raf.seek(torn + Integer.BYTES);
+			raf.writeInt(1);
+			raf.writeByte(1);
+		}
+		try (CheckpointFile<Boolean> cp = CheckpointFile.open(f, new BooleanResultCodec())) {
+			assertEquals(3, cp.getRecoveredResults().size());
+			cp.append(7, false);
+		}
+		try (CheckpointFile<Boolean> cp = CheckpointFile.open(f, new BooleanResultCodec())) {
+			final Map<Integer, Boolean> res = cp.getRecoveredResults();
+			assertEquals(4, res.size());
+			assertEquals(true, res.get(0));
+			assertEquals(false, res.get(1));
+			assertEquals(true, res.get(2));
+			assertEquals(false, res.get(7));
+		}
+	}
+
+	/**
+	 * Files which are not checkpoints are refused.
+	 * 
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	@Test
+	public void testNotACheckpoint() throws IOException {
+		final File f = folder.newFile();
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.write(new byte[HEADER * 2]);
+		}
+		try {
+			CheckpointFile.open(f, new BooleanResultCodec()).close();
+			fail("A file of zeros was opened as a checkpoint.");
+		} catch (IOException e) {
+			assertEquals(HEADER * 2, f.length());
+		}
+	}
+
+	/**
+	 * A checkpoint can not be opened twice.
+	 * 
+	 * @throws IOException
+	 *             if the checkpoint can not be written
+	 */
+	@Test(expected = IOException.class)
+	public void testLocked() throws IOException {
+		final File f = folder.newFile();
+		final CheckpointFile<Boolean> cp = CheckpointFile.create(f, new BooleanResultCodec(), SEED);
+		try {
+			CheckpointFile.open(f, new BooleanResultCodec()).close();
+		} finally {
+			cp.close();
+		}
+	}
+
+	/**
+	 * Files which are empty, shorter than the header or whose header was never
+	 * written do not hold any checkpoint, and can be created anew.
+	 * 
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	@Test
+	public void testStarted() throws IOException {
+		final File f = folder.newFile();
+		assertFalse(CheckpointFile.isStarted(f));
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.write(new byte[HEADER / 2]);
+		}
+		assertFalse(CheckpointFile.isStarted(f));
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.write(new byte[HEADER * 2]);
+		}
+		assertFalse(CheckpointFile.isStarted(f));
+		CheckpointFile.create(f, new BooleanResultCodec(), SEED).close();
+		assertTrue(CheckpointFile.isStarted(f));
+		assertFalse(CheckpointFile.isStarted(new File(folder.getRoot(), "missing")));
+	}
+
+}
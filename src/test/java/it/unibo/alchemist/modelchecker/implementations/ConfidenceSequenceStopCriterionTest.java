@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class ConfidenceSequenceStopCriterionTest {
+
+	private static final double DELTA = 0.05;
+	private static final double ALPHA = 0.05;
+	private static final double P = 0.3;
+	private static final int SEQUENCES = 200;
+	private static final int LENGTH = 2000;
+
+	/**
+	 * Checked after every single result, the sequences exclude the true mean
+	 * at some point with probability at most alpha.
+	 */
+	@Test
+	public void testAnytimeCoverage() {
+		final Random rng = new Random(0);
+		int misses = 0;
+		for (int s = 0; s < SEQUENCES; s++) {
+			final ConfidenceSequenceStopCriterion<Boolean> c = new ConfidenceSequenceStopCriterion<>(DELTA, ALPHA);
+			for (int i = 0; i < LENGTH; i++) {
+				c.update(rng.nextDouble() < P);
+				final double[] ci = c.getInterval();
+				if (ci[0] > P || ci[1] < P) {
+					misses++;
+					break;
+				}
+			}
+		}
+		assertTrue(misses + " misses out of " + SEQUENCES, misses <= ALPHA * SEQUENCES);
+	}
+
+	/**
+	 * The sequence is nested, and eventually narrower than 2 * delta.
+	 */
+	@Test
+	public void testNestedAndStopping() {
+		final Random rng = new Random(1);
+		final ConfidenceSequenceStopCriterion<Boolean> c = new ConfidenceSequenceStopCriterion<>(DELTA, ALPHA);
+		double[] previous = c.getInterval();
+		assertArrayEquals(new double[] { 0, 1 }, previous, 0);
+		assertFalse(c.isSatisfied());
+		for (int i = 0; i < LENGTH; i++) {
+			c.update(rng.nextDouble() < P);
+			final double[] ci = c.getInterval();
+			assertTrue(ci[0] >= previous[0] && ci[1] <= previous[1]);
+			previous = ci;
+		}
+		assertTrue(c.isSatisfied());
+		c.reset();
+		assertArrayEquals(new double[] { 0, 1 }, c.getInterval(), 0);
+	}
+
+	/**
+	 * Numeric results are scaled to the declared range, and refused outside
+	 * of it.
+	 */
+	@Test
+	public void testRange() {
+		final ConfidenceSequenceStopCriterion<Double> c = new ConfidenceSequenceStopCriterion<>(DELTA, ALPHA, -2, 2);
+		assertArrayEquals(new double[] { -2, 2 }, c.getInterval(), 0);
+		for (int i = 0; i < LENGTH; i++) {
+			c.update(1d);
+		}
+		final double[] ci = c.getInterval();
+		assertTrue(ci[0] <= 1 && ci[1] >= 1 && ci[1] - ci[0] < 1);
+		try {
+			c.update(3d);
+			fail("A result out of range was accepted.");
+		} catch (IllegalArgumentException e) {
+			assertArrayEquals(ci, c.getInterval(), 0);
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class ControlVariateAggregatorTest {
+
+	private static final int VALUES = 2000;
+	private static final double EPS = 1e-9;
+
+	/**
+	 * When y is a linear function of the control, the estimate is exact and
+	 * there is no residual.
+	 */
+	@Test
+	public void testExact() {
+		final ControlVariateAggregator cv = new ControlVariateAggregator(0.5);
+		final Random rng = new Random(0);
+		for (int i = 0; i < VALUES; i++) {
+			final double x = rng.nextDouble();
+			cv.add(new Object[] { 2 + 3 * x, x });
+		}
+		assertEquals(3.5, cv.aggregate(), EPS);
+		assertEquals(3, cv.getCoefficients()[0], EPS);
+		assertEquals(0, cv.getS(), 1e-6);
+	}
+
+	/**
+	 * The coefficients are the least squares ones, the estimate is the
+	 * corrected mean and the residual deviation is smaller than the one of y.
+	 */
+	@Test
+	public void testLeastSquares() {
+		final double[] mu = { 0.5, 0 };
+		final ControlVariateAggregator cv = new ControlVariateAggregator(mu);
+		final RunningStatistics y = new RunningStatistics();
+		final RunningStatistics x1 = new RunningStatistics();
+		final RunningStatistics x2 = new RunningStatistics();
+		final double[] ys = new double[VALUES];
+		final double[][] xs = new double[VALUES][2];
+		final Random rng = new Random(1);
+		for (int i = 0; i < VALUES; i++) {
+			xs[i][0] = rng.nextDouble();
+			xs[i][1] = rng.nextGaussian();
+			ys[i] = 1 + 2 * xs[i][0] - xs[i][1] + rng.nextGaussian() / 2;
+			cv.add(new Object[] { ys[i], xs[i][0], xs[i][1] });
+			y.add(ys[i]);
+			x1.add(xs[i][0]);
+			x2.add(xs[i][1]);
+		}
+		final OLSMultipleLinearRegression ols = new OLSMultipleLinearRegression();
+		ols.newSampleData(ys, xs);
+		final double[] beta = ols.estimateRegressionParameters();
+		final double[] b = cv.getCoefficients();
+		assertArrayEquals(new double[] { beta[1], beta[2] }, b, 1e-6);
+		assertEquals(y.getMean() - b[0] * (x1.getMean() - mu[0]) - b[1] * (x2.getMean() - mu[1]), cv.aggregate(), EPS);
+		assertEquals(Math.sqrt(ols.estimateErrorVariance()), cv.getS(), 1e-6);
+		assertTrue(cv.getS() < y.getStandardDeviation());
+	}
+
+	/**
+	 * A redundant control does not break the estimate.
+	 */
+	@Test
+	public void testCollinear() {
+		final ControlVariateAggregator single = new ControlVariateAggregator(0.5);
+		final ControlVariateAggregator twice = new ControlVariateAggregator(0.5, 1);
+		final Random rng = new Random(2);
+		for (int i = 0; i < VALUES; i++) {
+			final double x = rng.nextDouble();
+			final double v = x + rng.nextGaussian();
+			single.add(new Object[] { v, x });
+			twice.add(new Object[] { v, x, 2 * x });
+		}
+		assertEquals(single.aggregate(), twice.aggregate(), 1e-6);
+	}
+
+	/**
+	 * Booleans are mapped to 1 and 0, the estimate of nothing is NaN and the
+	 * deviation is infinite until there are more results than controls plus
+	 * one.
+	 */
+	@Test
+	public void testDegenerate() {
+		final ControlVariateAggregator cv = new ControlVariateAggregator(0.5);
+		assertTrue(Double.isNaN(cv.aggregate()));
+		cv.add(new Object[] { true, 1 });
+		cv.add(new Object[] { false, 0 });
+		assertTrue(Double.isInfinite(cv.getS()));
+		assertEquals(0.5, cv.aggregate(), EPS);
+		cv.reset();
+		assertEquals(0, cv.getCount());
+	}
+
+	/**
+	 * Results of the wrong length are refused.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongLength() {
+		new ControlVariateAggregator(0.5).add(new Object[] { 1d });
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class JobHandoffTest {
+
+	private static final int JOBS = 1000;
+	private static final int THREADS = 4;
+
+	/**
+	 * A descriptor offered is claimed once.
+	 */
+	@Test
+	public void testOfferClaim() {
+		final JobHandoff<String> h = new JobHandoff<>();
+		h.offer("a");
+		assertEquals("a", h.claim());
+		h.offer("b");
+		assertEquals("b", h.claim());
+	}
+
+	/**
+	 * A descriptor can not be offered before the previous one is claimed.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testDoubleOffer() {
+		final JobHandoff<Integer> h = new JobHandoff<>();
+		h.offer(1);
+		h.offer(2);
+	}
+
+	/**
+	 * Claiming with no descriptor waiting is an error.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testClaimWithoutOffer() {
+		new JobHandoff<Integer>().claim();
+	}
+
+	/**
+	 * Clearing forgets the descriptor offered.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testClear() {
+		final JobHandoff<Integer> h = new JobHandoff<>();
+		h.offer(1);
+		h.clear();
+		h.claim();
+	}
+
+	/**
+	 * Jobs configured asynchronously, by a pool of threads, get their own
+	 * descriptor.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	@Test
+	public void testAsynchronousConfiguration() throws InterruptedException {
+		final JobHandoff<Integer> h = new JobHandoff<>();
+		final AtomicIntegerArray configured = new AtomicIntegerArray(JOBS);
+		final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		for (int i = 0; i < JOBS; i++) {
+			final int job = i;
+			h.offer(job);
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					configured.set(job, h.claim());
+				}
+			});
+			h.awaitClaim();
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+		for (int i = 0; i < JOBS; i++) {
+			assertEquals(i, configured.get(i));
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class NumericResultCodecTest {
+
+	/**
+	 * Every boxed type survives a round trip with its type and value, in
+	 * nine bytes at most.
+	 */
+	@Test
+	public void testRoundTrip() {
+		final NumericResultCodec<Number> codec = new NumericResultCodec<>();
+		final Number[] values = { Math.PI, Double.NaN, -0f, Float.MAX_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE, (short) -3, (byte) 7 };
+		for (final Number v : values) {
+			final byte[] b = codec.encode(v);
+			assertTrue(b.length <= Byte.BYTES + Long.BYTES);
+			assertEquals(v, codec.decode(b));
+		}
+	}
+
+}
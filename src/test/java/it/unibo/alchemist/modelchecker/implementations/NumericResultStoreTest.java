@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class NumericResultStoreTest {
+
+	private static final double EPS = 0;
+	private static final int MANY = 10000;
+
+	/**
+	 * Results are read back in insertion order, across segments.
+	 */
+	@Test
+	public void testManySegments() {
+		final NumericResultStore<Double> store = new NumericResultStore<>();
+		final double[] expected = new double[MANY];
+		for (int i = 0; i < MANY; i++) {
+			expected[i] = i / 3d;
+			store.add(expected[i]);
+		}
+		assertEquals(MANY, store.size());
+		assertEquals(expected[MANY - 1], store.get(MANY - 1), EPS);
+		assertArrayEquals(expected, store.toDoubleArray(), EPS);
+		assertEquals(MANY, store.asPropertyList().size());
+		assertEquals(expected[1], store.asPropertyList().get(1).getResult(), EPS);
+	}
+
+	/**
+	 * Results keep their type.
+	 */
+	@Test
+	public void testType() {
+		final NumericResultStore<Integer> store = new NumericResultStore<>();
+		store.add(3);
+		assertEquals(Integer.valueOf(3), store.get(0));
+	}
+
+	/**
+	 * Mixing types does not truncate: results are read back as doubles.
+	 */
+	@Test
+	public void testMixedTypes() {
+		final NumericResultStore<Number> store = new NumericResultStore<>();
+		store.add(1);
+		store.add(2.5);
+		store.add(3L);
+		assertEquals(Double.valueOf(1), store.get(0));
+		assertEquals(Double.valueOf(2.5), store.get(1));
+		assertEquals(Double.valueOf(3), store.get(2));
+	}
+
+	/**
+	 * Clearing forgets results and their type.
+	 */
+	@Test
+	public void testClear() {
+		final NumericResultStore<Number> store = new NumericResultStore<>();
+		store.add(1.5);
+		store.add(2);
+		store.clear();
+		assertEquals(0, store.size());
+		store.add(4);
+		assertEquals(Integer.valueOf(4), store.get(0));
+	}
+
+	/**
+	 * Reading past the end fails.
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfBounds() {
+		final NumericResultStore<Double> store = new NumericResultStore<>();
+		store.add(1d);
+		store.get(1);
+	}
+
+}
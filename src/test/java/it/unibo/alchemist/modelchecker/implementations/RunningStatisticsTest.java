@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class RunningStatisticsTest {
+
+	private static final int VALUES = 10000;
+	private static final double EPS = 1e-9;
+
+	/**
+	 * Count, mean and variance match a two pass computation.
+	 */
+	@Test
+	public void testMoments() {
+		final Random rng = new Random(0);
+		final RunningStatistics rs = new RunningStatistics();
+		final SummaryStatistics ss = new SummaryStatistics();
+		for (int i = 0; i < VALUES; i++) {
+			final double x = rng.nextGaussian() * 3 + 2;
+			rs.add(x);
+			ss.addValue(x);
+		}
+		assertEquals(VALUES, rs.getCount());
+		assertEquals(ss.getMean(), rs.getMean(), EPS);
+		assertEquals(ss.getVariance(), rs.getVariance(), EPS);
+		assertEquals(ss.getStandardDeviation(), rs.getStandardDeviation(), EPS);
+	}
+
+	/**
+	 * A large offset does not ruin the variance, as it would with the naive
+	 * sum of squares.
+	 */
+	@Test
+	public void testLargeOffset() {
+		final RunningStatistics rs = new RunningStatistics();
+		final double offset = 1e9;
+		rs.add(offset + 4);
+		rs.add(offset + 7);
+		rs.add(offset + 13);
+		rs.add(offset + 16);
+		assertEquals(offset + 10, rs.getMean(), 0);
+		assertEquals(30, rs.getVariance(), EPS);
+	}
+
+	/**
+	 * The mean of no values is NaN, and reset forgets everything.
+	 */
+	@Test
+	public void testReset() {
+		final RunningStatistics rs = new RunningStatistics();
+		assertTrue(Double.isNaN(rs.getMean()));
+		rs.add(1);
+		rs.add(3);
+		rs.reset();
+		assertEquals(0, rs.getCount());
+		assertTrue(Double.isNaN(rs.getMean()));
+		rs.add(5);
+		rs.add(7);
+		assertEquals(6, rs.getMean(), 0);
+		assertEquals(2, rs.getVariance(), 0);
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class SeedSequenceTest {
+
+	private static final long MASTER = 0x5DEECE66DL;
+	private static final int RUNS = 1 << 18;
+
+	/**
+	 * With master seed 0, the seeds are the outputs of the reference
+	 * SplitMix64 generator seeded with 0.
+	 */
+	@Test
+	public void testReferenceValues() {
+		final SeedSequence seeds = new SeedSequence(0);
+		assertEquals(0xE220A8397B1DCDAFL, seeds.getSeed(0));
+		assertEquals(0x6E789E6AA1B965F4L, seeds.getSeed(1));
+	}
+
+	/**
+	 * The seed of a run does not depend on the order seeds are asked in, nor
+	 * on the instance.
+	 */
+	@Test
+	public void testOrderIndependence() {
+		final SeedSequence forward = new SeedSequence(MASTER);
+		final long[] expected = new long[100];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = forward.getSeed(i);
+		}
+		final SeedSequence backward = new SeedSequence(MASTER);
+		for (int i = expected.length - 1; i >= 0; i--) {
+			assertEquals(expected[i], backward.getSeed(i));
+		}
+		assertEquals(MASTER, backward.getMasterSeed());
+	}
+
+	/**
+	 * Seeds are 64 bits wide: 2^18 runs would give a few collisions with 32
+	 * bit seeds, and none is expected with 64 bit seeds.
+	 */
+	@Test
+	public void testNoCollisions() {
+		final SeedSequence seeds = new SeedSequence(MASTER);
+		final Set<Long> seen = new HashSet<>();
+		boolean wide = false;
+		for (int i = 0; i < RUNS; i++) {
+			final long seed = seeds.getSeed(i);
+			assertTrue("Collision at run " + i, seen.add(seed));
+			wide |= seed != (int) seed;
+		}
+		assertTrue(wide);
+	}
+
+	/**
+	 * Different master seeds give different sequences.
+	 */
+	@Test
+	public void testMasterSeed() {
+		assertNotEquals(new SeedSequence(MASTER).getSeed(0), new SeedSequence(MASTER + 1).getSeed(0));
+		assertNotEquals(new SeedSequence(MASTER).getSeed(-1), new SeedSequence(MASTER).getSeed(0));
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Pianini
+ * 
+ */
+public class SerializingResultCodecTest {
+
+	/**
+	 * Results made of allowed classes survive a round trip.
+	 */
+	@Test
+	public void testRoundTrip() {
+		final SerializingResultCodec<Object[]> codec = new SerializingResultCodec<>();
+		final Object[] result = { true, 1.5, 3, "s", new double[] { 1, 2 } };
+		final Object[] decoded = codec.decode(codec.encode(result));
+		assertEquals(result.length, decoded.length);
+		for (int i = 0; i < result.length - 1; i++) {
+			assertEquals(result[i], decoded[i]);
+		}
+		assertArrayEquals((double[]) result[4], (double[]) decoded[4], 0);
+	}
+
+	/**
+	 * Classes not allowed are not decoded.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejected() {
+		final SerializingResultCodec<List<Integer>> codec = new SerializingResultCodec<>();
+		final List<Integer> result = new ArrayList<>();
+		result.add(1);
+		codec.decode(codec.encode(result));
+	}
+
+	/**
+	 * Classes passed to the constructor are decoded.
+	 */
+	@Test
+	public void testAllowed() {
+		final SerializingResultCodec<Point> codec = new SerializingResultCodec<>(Point.class);
+		final Point p = new Point(1, 2);
+		assertEquals(p, codec.decode(codec.encode(p)));
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the likelihood ratio on a chain with a single transition, from A to
+ * B, whose original rate is a and whose biased rate is b. The time of the
+ * transition is exponential, so the ratio of a trajectory has a closed form:
+ * the ratio of the densities if the transition happens before the horizon,
+ * the ratio of the survival functions otherwise.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class TrajectoryLikelihoodTest {
+
+	private static final double A = 1;
+	private static final double B = 3;
+	private static final double H = 1;
+	private static final double EPS = 1e-12;
+	private static final int SAMPLES = 200000;
+	private static final double TOLERANCE = 0.01;
+
+	private static double ratio(final double time) {
+		final TrajectoryLikelihood l = new TrajectoryLikelihood(H, 0, A - B);
+		l.event(time, Math.log(A / B), 0);
+		l.censor();
+		return Math.exp(l.getLogRatio());
+	}
+
+	/**
+	 * A transition before the horizon is weighted with the ratio of the
+	 * densities.
+	 */
+	@Test
+	public void testEvent() {
+		final double t = 0.2;
+		assertEquals(A * Math.exp(-A * t) / (B * Math.exp(-B * t)), ratio(t), EPS);
+	}
+
+	/**
+	 * A trajectory with no transition before the horizon is weighted with the
+	 * ratio of the survival functions, even if the transition past the
+	 * horizon is simulated.
+	 */
+	@Test
+	public void testCensored() {
+		final double survival = Math.exp(-A * H) / Math.exp(-B * H);
+		final TrajectoryLikelihood l = new TrajectoryLikelihood(H, 0, A - B);
+		l.censor();
+		assertEquals(survival, Math.exp(l.getLogRatio()), EPS);
+		assertEquals(survival, ratio(1.5), EPS);
+		l.event(2, Math.log(A / B), 0);
+		assertEquals(survival, Math.exp(l.getLogRatio()), EPS);
+	}
+
+	/**
+	 * With no horizon, censoring has no effect.
+	 */
+	@Test
+	public void testNoHorizon() {
+		final TrajectoryLikelihood l = new TrajectoryLikelihood(Double.POSITIVE_INFINITY, 0, A - B);
+		l.event(2, Math.log(A / B), 0);
+		l.censor();
+		assertEquals(Math.log(A / B) - (A - B) * 2, l.getLogRatio(), EPS);
+	}
+
+	/**
+	 * Sampling the biased chain, the weights average to one and the weighted
+	 * indicator of the transition averages to its original probability.
+	 */
+	@Test
+	public void testUnbiased() {
+		final Random rng = new Random(0);
+		double weights = 0;
+		double hits = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			final double t = -Math.log(1 - rng.nextDouble()) / B;
+			final double w = ratio(t);
+			weights += w;
+			if (t <= H) {
+				hits += w;
+			}
+		}
+		assertEquals(1, weights / SAMPLES, TOLERANCE);
+		assertEquals(1 - Math.exp(-A * H), hits / SAMPLES, TOLERANCE);
+	}
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2010-2014, Danilo Pianini and contributors
+ * listed in the project's pom.xml file.
+ * 
+ * This file is part of Alchemist, and is distributed under the terms of
+ * the GNU General Public License, with a linking exception, as described
+ * in the file LICENSE in the Alchemist distribution's top directory.
+ */
+package it.unibo.alchemist.modelchecker.implementations;
+
+import static org.junit.Assert.assertEquals;
+import it.unibo.alchemist.model.interfaces.IEnvironment;
+import it.unibo.alchemist.model.interfaces.INode;
+import it.unibo.alchemist.model.interfaces.IReaction;
+import it.unibo.alchemist.model.interfaces.ITime;
+import it.unibo.alchemist.modelchecker.interfaces.Observation;
+import it.unibo.alchemist.modelchecker.interfaces.Property;
+import it.unibo.alchemist.modelchecker.interfaces.ReactionBias;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives a weighted property through a run of a single node with two
+ * reactions. The first one has biased rate 3 and original rate 1, and is
+ * disabled once it fires. The second one has biased rate 1 and original rate
+ * 2, and stays enabled. The first reaction fires at time {@link #T}, and the
+ * horizon is {@link #H}.
+ * 
+ * @author Danilo Pianini
+ * 
+ */
+public class WeightedPropertyTest {
+
+	private static final double T = 0.2;
+	private static final double H = 1;
+	private static final double PAST_HORIZON = 1.5;
+	private static final double EPS = 1e-12;
+	/*
+	 * log(1 / 3) for the event, and -(A - B) * T = -(3 - 4) * T for the
+	 * sojourn before it.
+	 */
+	private static final double EVENT = Math.log(1.0 / 3) + T;
+	/*
+	 * -(A - B) * (H - T) = -(2 - 1) * (H - T) for the sojourn after it.
+	 */
+	private static final double SURVIVAL = -(H - T);
+	private static final double NO_MORE_A = 0.5;
+	private final double[] rates = new double[2];
+	private final double[] originals = new double[2];
+	private IReaction<Object> first;
+	private IReaction<Object> second;
+	private IEnvironment<Object> env;
+
+	/**
+	 * Builds the model in its initial state.
+	 */
+	@Before
+	public void setUp() {
+		rates[0] = 3;
+		rates[1] = 1;
+		originals[0] = 1;
+		originals[1] = 2;
+		first = reaction(0);
+		second = reaction(1);
+		final INode<Object> node = stub(INode.class, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method m, final Object[] args) {
+				return "getReactions".equals(m.getName()) ? Arrays.asList(first, second) : identity(proxy, m, args);
+			}
+		});
+		env = stub(IEnvironment.class, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method m, final Object[] args) {
+				return "iterator".equals(m.getName()) ? Collections.singletonList(node).iterator() : identity(proxy, m, args);
+			}
+		});
+	}
+
+	/**
+	 * A run stopped by the wrapped property is weighted at the time it stopped
+	 * at, with no sojourn up to the horizon.
+	 */
+	@Test
+	public void testStoppedByProperty() {
+		final WeightedProperty<Object, Object, Integer> p = start(1);
+		fireFirst(p);
+		p.finished(env, time(T), 1);
+		assertEquals(Math.exp(EVENT), p.getResult().getWeight(), EPS);
+		assertEquals(1, (int) p.getResult().getValue());
+	}
+
+	/**
+	 * A run stopped at the step limit ends at an event, and needs no survival
+	 * term.
+	 */
+	@Test
+	public void testStepLimit() {
+		final WeightedProperty<Object, Object, Integer> p = start(Integer.MAX_VALUE);
+		fireFirst(p);
+		p.finished(env, time(T), 1);
+		assertEquals(Math.exp(EVENT), p.getResult().getWeight(), EPS);
+	}
+
+	/**
+	 * A run observed up to the horizon is closed with the survival term of
+	 * its last sojourn, even if an event past the horizon is simulated.
+	 */
+	@Test
+	public void testHorizon() {
+		final WeightedProperty<Object, Object, Integer> p = start(Integer.MAX_VALUE);
+		fireFirst(p);
+		p.stepDone(env, second, time(PAST_HORIZON), 2);
+		p.finished(env, time(PAST_HORIZON), 2);
+		assertEquals(Math.exp(EVENT + SURVIVAL), p.getResult().getWeight(), EPS);
+	}
+
+	/**
+	 * A run ending before the horizon because no reaction can fire is closed
+	 * with the survival term of its last sojourn. Here the second reaction can
+	 * not fire in the biased model, and has original rate 0.5.
+	 */
+	@Test
+	public void testNoMoreEvents() {
+		rates[1] = 0;
+		originals[1] = NO_MORE_A;
+		final WeightedProperty<Object, Object, Integer> p = start(Integer.MAX_VALUE);
+		fireFirst(p);
+		p.finished(env, time(T), 1);
+		final double event = Math.log(1.0 / 3) - (1 + NO_MORE_A - 3) * T;
+		assertEquals(Math.exp(event - NO_MORE_A * (H - T)), p.getResult().getWeight(), EPS);
+	}
+
+	private WeightedProperty<Object, Object, Integer> start(final int events) {
+		final WeightedProperty<Object, Object, Integer> p = new WeightedProperty<>(new Counter(events), new ReactionBias<Object>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double getOriginalRate(final IReaction<Object> r) {
+				return originals[r == first ? 0 : 1];
+			}
+		});
+		p.setHorizon(H);
+		final WeightedProperty<Object, Object, Integer> res = p.clone();
+		res.initialized(env);
+		return res;
+	}
+
+	private void fireFirst(final Property<Object, Object, ?> p) {
+		rates[0] = 0;
+		originals[0] = 0;
+		p.stepDone(env, first, time(T), 1);
+	}
+
+	private IReaction<Object> reaction(final int i) {
+		return stub(IReaction.class, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method m, final Object[] args) {
+				return "getRate".equals(m.getName()) ? rates[i] : identity(proxy, m, args);
+			}
+		});
+	}
+
+	private static ITime time(final double t) {
+		return stub(ITime.class, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method m, final Object[] args) {
+				return "toDouble".equals(m.getName()) ? t : identity(proxy, m, args);
+			}
+		});
+	}
+
+	/*
+	 * The Alchemist interfaces have many more methods than the ones a
+	 * weighted property calls, so they are stubbed with proxies.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <X> X stub(final Class<?> type, final InvocationHandler h) {
+		return (X) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, h);
+	}
+
+	private static Object identity(final Object proxy, final Method m, final Object[] args) {
+		if ("equals".equals(m.getName())) {
+			return proxy == args[0];
+		}
+		if ("hashCode".equals(m.getName())) {
+			return System.identityHashCode(proxy);
+		}
+		throw new UnsupportedOperationException(m.getName());
+	}
+
+	/*
+	 * Counts the events of a run, and can not change after the given number
+	 * of them.
+	 */
+	private static final class Counter implements Property<Object, Object, Integer> {
+
+		private static final long serialVersionUID = 1L;
+		private final int limit;
+		private int events;
+
+		Counter(final int max) {
+			limit = max;
+		}
+
+		@Override
+		public void addObservation(final Observation<Object, Object> obs) {
+		}
+
+		@Override
+		public boolean canChange() {
+			return events < limit;
+		}
+
+		@Override
+		public Counter clone() {
+			return new Counter(limit);
+		}
+
+		@Override
+		public Integer getResult() {
+			return events;
+		}
+
+		@Override
+		public void initialized(final IEnvironment<Object> e) {
+		}
+
+		@Override
+		public void stepDone(final IEnvironment<Object> e, final IReaction<Object> r, final ITime time, final long step) {
+			events++;
+		}
+
+		@Override
+		public void finished(final IEnvironment<Object> e, final ITime time, final long step) {
+		}
+
+	}
+
+}